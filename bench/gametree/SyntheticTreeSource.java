@@ -0,0 +1,119 @@
+package gametree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * TreeSource for synthetic games used in benchmarks: every non-terminal node
+ * has the same number of children, players alternate at each depth (starting
+ * with player 1) and, optionally, every natureEvery-th depth belongs to 
+ * nature. Children at the same depth share their labels, as they do in the
+ * trees sent by the game engine, where labels name information sets.
+ * The whole tree is materialised up front, so that building a GameTree from
+ * it measures only the build itself.
+ */
+public class SyntheticTreeSource implements TreeSource<SyntheticTreeSource.Node> {
+
+	public static class Node {
+		final String label;
+		final int value;
+		final String type;
+		final Node[] children;
+		final double[] weights;
+		final String[] outcome;
+
+		Node(String label, int value, String type, Node[] children, double[] weights, String[] outcome) {
+			this.label = label;
+			this.value = value;
+			this.type = type;
+			this.children = children;
+			this.weights = weights;
+			this.outcome = outcome;
+		}
+	}
+
+	private final Node root;
+	private final List<List<Integer>> possibilities;
+	private int size;
+
+	/**
+	 * @param branching number of children of each non-terminal node.
+	 * @param depth depth of the terminal nodes.
+	 * @param natureEvery if positive, nodes at depths that are multiples 
+	 * of natureEvery (other than the root) are nature nodes.
+	 * @param seed seed for the payoffs.
+	 */
+	public SyntheticTreeSource(int branching, int depth, int natureEvery, long seed) {
+		this.possibilities = new ArrayList<List<Integer>>();
+		for(int d = 0; d < depth; d++) {
+			if(!isNature(d, natureEvery))
+				this.possibilities.add(Collections.singletonList(branching));
+		}
+		this.size = 0;
+		this.root = make("root", 0, branching, depth, natureEvery, new Random(seed));
+	}
+
+	private static boolean isNature(int d, int natureEvery) {
+		return natureEvery > 0 && d > 0 && d % natureEvery == 0;
+	}
+
+	private Node make(String label, int d, int branching, int depth, int natureEvery, Random random) {
+		int value = ++this.size;
+		if(d == depth) {
+			String[] payoffs = { Integer.toString(random.nextInt(21) - 10), Integer.toString(random.nextInt(21) - 10) };
+			return new Node(label, value, "t", new Node[0], new double[0], payoffs);
+		}
+		String type = isNature(d, natureEvery) ? "c" : (d % 2 == 0 ? "P1" : "P2");
+		Node[] children = new Node[branching];
+		double[] weights = new double[branching];
+		String[] outcome = new String[branching];
+		for(int i = 0; i < branching; i++) {
+			outcome[i] = (d + 1) + ":" + type + ":a" + i;
+			weights[i] = 1.0 / branching;
+			children[i] = make(label + "." + i, d + 1, branching, depth, natureEvery, random);
+		}
+		return new Node(label, value, type, children, weights, outcome);
+	}
+
+	/**
+	 * @return the number of nodes of the tree.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	public Node getRoot() {
+		return this.root;
+	}
+
+	public List<List<Integer>> getPossibilities() {
+		return this.possibilities;
+	}
+
+	public String getLabel(Node node) {
+		return node.label;
+	}
+
+	public int getValue(Node node) {
+		return node.value;
+	}
+
+	public String getType(Node node) {
+		return node.type;
+	}
+
+	public Node[] getChildren(Node node) {
+		return node.children;
+	}
+
+	public double[] getChildrenWeight(Node node) {
+		return node.weights;
+	}
+
+	public String[] getOutcome(Node node) {
+		return node.outcome;
+	}
+
+}
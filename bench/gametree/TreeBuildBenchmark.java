@@ -0,0 +1,78 @@
+package gametree;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares the sequential and the parallel construction of GameTree on
+ * synthetic trees of increasing size, and reports the smallest size from
+ * which the parallel build is consistently faster. That size is the basis for
+ * GameTree.PARALLEL_THRESHOLD.
+ *
+ * Both builds expand the nodes with the same code, so the difference between
+ * them is the cost of the fork-join tasks. With a single worker in the common
+ * pool that cost is all there is to measure: the benchmark then also reports
+ * the time expected with two workers (half the sequential time plus the
+ * measured cost of the tasks), which is the smallest parallel setting in
+ * which GameTree.fromSource builds in parallel.
+ *
+ * Usage: TreeBuildBenchmark [branching [maxDepth [runs]]]
+ */
+public class TreeBuildBenchmark {
+
+	public static void main(String[] args) {
+		int branching = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		int maxDepth = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		int runs = args.length > 2 ? Integer.parseInt(args[2]) : 15;
+
+		boolean estimated = ForkJoinPool.getCommonPoolParallelism() < 2;
+		System.out.println("branching " + branching + ", " + ForkJoinPool.getCommonPoolParallelism() + " workers"
+				+ (estimated ? ", parallel time estimated for 2 workers" : ""));
+		System.out.println(String.format("%6s %10s %14s %14s %8s", "depth", "nodes", "sequential ms", "parallel ms", "speedup"));
+		long crossover = -1;
+		for(int depth = 2; depth <= maxDepth; depth++) {
+			SyntheticTreeSource source = new SyntheticTreeSource(branching, depth, 0, depth);
+			double[] medians = medians(source, runs);
+			double sequential = medians[0];
+			double parallel = medians[1];
+			if(estimated) //The tasks cost parallel - sequential, the rest is shared by 2 workers
+				parallel = (parallel - sequential) + sequential / 2;
+			System.out.println(String.format("%6d %10d %14.3f %14.3f %8.2f", depth, source.size(), sequential, parallel, sequential / parallel));
+			if(parallel >= sequential)
+				crossover = -1;
+			else if(crossover < 0)
+				crossover = source.size();
+		}
+		if(crossover < 0)
+			System.out.println("The parallel build was never faster.");
+		else
+			System.out.println("The parallel build is faster from about " + crossover + " nodes.");
+	}
+
+	/*
+	 * Median times of the sequential and the parallel build. The runs of
+	 * both builds alternate, each after a collection, so that neither pays
+	 * for the garbage of the other.
+	 */
+	private static double[] medians(SyntheticTreeSource source, int runs) {
+		for(int i = 0; i < runs; i++) { //warm up
+			GameTree.fromSource(source, false);
+			GameTree.fromSource(source, true);
+		}
+		double[][] times = new double[2][runs];
+		for(int i = 0; i < runs; i++) {
+			for(int k = 0; k < 2; k++) {
+				System.gc();
+				long start = System.nanoTime();
+				GameTree t = GameTree.fromSource(source, k == 1);
+				times[k][i] = (System.nanoTime() - start) / 1e6;
+				if(t.getNodeByIndex(source.size()) == null)
+					throw new IllegalStateException("Incomplete tree");
+			}
+		}
+		Arrays.sort(times[0]);
+		Arrays.sort(times[1]);
+		return new double[] { times[0][runs / 2], times[1][runs / 2] };
+	}
+
+}
@@ -0,0 +1,260 @@
+package play;
+
+import java.util.List;
+
+import gametree.CompactGameTree;
+import gametree.GameTree;
+import gametree.InformationSetIndex;
+import gametree.MatrixGameSource;
+
+/**
+ * Checks the solvers against games whose solutions are known: the linear
+ * program, iterated dominance, support enumeration, Lemke-Howson, the
+ * zero-sum solver and CFR. Each check prints a line; the first one that
+ * fails throws an IllegalStateException, so that the driver exits with an
+ * error.
+ *
+ * Usage: SolverCheck
+ */
+public class SolverCheck {
+
+	private static final double EPS = 1e-6;
+	private static final String[] HEADS_TAILS = { "Heads", "Tails" };
+	private static final String[] OPERA_FOOTBALL = { "Opera", "Football" };
+
+	public static void main(String[] args) {
+		linearProgram();
+		iteratedDominance();
+		supportEnumeration();
+		lemkeHowson();
+		zeroSum();
+		cfr();
+		System.out.println("All solver checks passed.");
+	}
+
+	/*
+	 * maximize x0 + x1 subject to x0 + 2 x1 <= 4, 3 x0 + x1 <= 6: the
+	 * optimum is (1.6, 1.2), of value 2.8, and the dual is (0.4, 0.2).
+	 */
+	private static void linearProgram() {
+		LinearProgram lp = new LinearProgram(2, 2);
+		lp.setCoefficient(0, 0, 1);
+		lp.setCoefficient(0, 1, 2);
+		lp.setCoefficient(1, 0, 3);
+		lp.setCoefficient(1, 1, 1);
+		lp.setBound(0, 4);
+		lp.setBound(1, 6);
+		lp.setObjective(0, 1);
+		lp.setObjective(1, 1);
+		check(lp.solve() == LinearProgram.OPTIMAL, "LinearProgram: not optimal");
+		near(lp.getValue(), 2.8, "LinearProgram: value");
+		near(lp.getPrimal(0), 1.6, "LinearProgram: x0");
+		near(lp.getPrimal(1), 1.2, "LinearProgram: x1");
+		near(lp.getDual(0), 0.4, "LinearProgram: y0");
+		near(lp.getDual(1), 0.2, "LinearProgram: y1");
+
+		lp = new LinearProgram(1, 2); //x1 is not bounded
+		lp.setCoefficient(0, 0, 1);
+		lp.setBound(0, 1);
+		lp.setObjective(1, 1);
+		check(lp.solve() == LinearProgram.UNBOUNDED, "LinearProgram: not unbounded");
+		System.out.println("ok LinearProgram");
+	}
+
+	/*
+	 * In the prisoner's dilemma only (Defect, Defect) survives. In the
+	 * second game the third row is dominated only by the mix of the others.
+	 */
+	private static void iteratedDominance() {
+		NormalFormGame pd = game(MatrixGameSource.prisonersDilemma());
+		NormalFormGame reduced = IteratedDominance.strict(pd);
+		int[] rows = reduced.consideredRows();
+		int[] cols = reduced.consideredColumns();
+		check(rows.length == 1 && pd.rowLabels[rows[0]].equals("1:1:Defect"), "IteratedDominance: rows of the prisoner's dilemma");
+		check(cols.length == 1 && pd.colLabels[cols[0]].equals("2:1:Defect"), "IteratedDominance: columns of the prisoner's dilemma");
+
+		int[][] u1 = { { 3, 0 }, { 0, 3 }, { 1, 1 } };
+		int[][] u2 = { { 0, 0 }, { 0, 0 }, { 0, 0 } };
+		NormalFormGame g = new NormalFormGame(u1, u2, new String[] { "1:1:A", "1:1:B", "1:1:C" }, new String[] { "2:1:L", "2:1:R" });
+		check(new IteratedDominance(g, false, false).solve().consideredRows().length == 3, "IteratedDominance: pure dominance removed a row");
+		reduced = new IteratedDominance(g, false, true).solve();
+		check(reduced.consideredRows().length == 2 && !reduced.isRowConsidered(2), "IteratedDominance: mixed dominance kept the third row");
+		System.out.println("ok IteratedDominance");
+	}
+
+	/*
+	 * Matching pennies has a single equilibrium, (1/2, 1/2) for both; the
+	 * battle of the sexes has three: both pure ones and ((3/5, 2/5), (2/5, 3/5)).
+	 */
+	private static void supportEnumeration() {
+		NormalFormGame mp = game(MatrixGameSource.matchingPennies());
+		SupportEnumerationSolver solver = new SupportEnumerationSolver(mp);
+		List<Equilibrium> equilibria = solver.solve();
+		check(solver.isComplete(), "SupportEnumerationSolver: incomplete search");
+		check(equilibria.size() == 1, "SupportEnumerationSolver: " + equilibria.size() + " equilibria in matching pennies");
+		mix(mp, equilibria.get(0), HEADS_TAILS, new double[] { 0.5, 0.5 }, new double[] { 0.5, 0.5 }, "SupportEnumerationSolver: matching pennies");
+
+		NormalFormGame bos = game(MatrixGameSource.battleOfTheSexes());
+		equilibria = new SupportEnumerationSolver(bos).solve();
+		check(equilibria.size() == 3, "SupportEnumerationSolver: " + equilibria.size() + " equilibria in the battle of the sexes");
+		//Ordered by support size, the pure equilibria (in either order) first
+		boolean operaFirst = equilibria.get(0).getRowStrategy()[index(bos.rowLabels, "Opera")] > 0.5;
+		mix(bos, equilibria.get(operaFirst ? 0 : 1), OPERA_FOOTBALL, new double[] { 1, 0 }, new double[] { 1, 0 }, "SupportEnumerationSolver: battle of the sexes, opera");
+		mix(bos, equilibria.get(operaFirst ? 1 : 0), OPERA_FOOTBALL, new double[] { 0, 1 }, new double[] { 0, 1 }, "SupportEnumerationSolver: battle of the sexes, football");
+		mix(bos, equilibria.get(2), OPERA_FOOTBALL, new double[] { 0.6, 0.4 }, new double[] { 0.4, 0.6 }, "SupportEnumerationSolver: battle of the sexes, mixed");
+		near(equilibria.get(2).getPayoffP1(), 1.2, "SupportEnumerationSolver: battle of the sexes, payoff of player 1");
+		near(equilibria.get(2).getPayoffP2(), 1.2, "SupportEnumerationSolver: battle of the sexes, payoff of player 2");
+		System.out.println("ok SupportEnumerationSolver");
+	}
+
+	/*
+	 * Every path ends at an equilibrium: the one of matching pennies, and
+	 * one of the three of the battle of the sexes.
+	 */
+	private static void lemkeHowson() {
+		NormalFormGame mp = game(MatrixGameSource.matchingPennies());
+		LemkeHowsonSolver solver = new LemkeHowsonSolver(mp);
+		for(int label = 0; label < solver.numberOfLabels(); label++)
+			mix(mp, solver.solve(label), HEADS_TAILS, new double[] { 0.5, 0.5 }, new double[] { 0.5, 0.5 }, "LemkeHowsonSolver: matching pennies, label " + label);
+		NormalFormGame bos = game(MatrixGameSource.battleOfTheSexes());
+		solver = new LemkeHowsonSolver(bos);
+		for(int label = 0; label < solver.numberOfLabels(); label++)
+			equilibrium(bos, solver.solve(label), "LemkeHowsonSolver: battle of the sexes, label " + label);
+		equilibrium(bos, solver.solve(Long.MAX_VALUE), "LemkeHowsonSolver: battle of the sexes, all labels");
+		System.out.println("ok LemkeHowsonSolver");
+	}
+
+	/*
+	 * Rock-paper-scissors is solved by the uniform strategy, of value 0.
+	 * In skewed pennies both players play (2/5, 3/5), and the value is 1/5.
+	 */
+	private static void zeroSum() {
+		NormalFormGame rps = game(MatrixGameSource.rockPaperScissors());
+		check(ZeroSumSolver.isConstantSum(rps), "ZeroSumSolver: rock-paper-scissors is not zero-sum");
+		check(!ZeroSumSolver.isConstantSum(game(MatrixGameSource.battleOfTheSexes())), "ZeroSumSolver: the battle of the sexes is zero-sum");
+		double third = 1.0 / 3;
+		Equilibrium e = ZeroSumSolver.solve(rps);
+		mix(rps, e, new String[] { "Rock", "Paper", "Scissors" }, new double[] { third, third, third }, new double[] { third, third, third },
+				"ZeroSumSolver: rock-paper-scissors");
+		near(e.getPayoffP1(), 0, "ZeroSumSolver: rock-paper-scissors, value");
+
+		NormalFormGame skewed = game(skewedPennies());
+		e = ZeroSumSolver.solve(skewed);
+		mix(skewed, e, HEADS_TAILS, new double[] { 0.4, 0.6 }, new double[] { 0.4, 0.6 }, "ZeroSumSolver: skewed pennies");
+		near(e.getPayoffP1(), 0.2, "ZeroSumSolver: skewed pennies, value of player 1");
+		near(e.getPayoffP2(), -0.2, "ZeroSumSolver: skewed pennies, value of player 2");
+		System.out.println("ok ZeroSumSolver");
+	}
+
+	/*
+	 * The exploitability of the average strategy of CFR shrinks towards 0
+	 * on skewed pennies, whose equilibrium is not the uniform strategy the
+	 * iterations start from.
+	 */
+	private static void cfr() {
+		GameTree tree = GameTree.fromSource(skewedPennies());
+		NormalFormGame g = NormalFormGame.fromTree(tree);
+		CfrSolver solver = new CfrSolver(CompactGameTree.of(tree));
+		double previous = Double.POSITIVE_INFINITY;
+		int done = 0;
+		for(int iterations = 10; iterations <= 10000; iterations *= 10) {
+			solver.iterate(iterations - done);
+			done = iterations;
+			double exploitability = exploitability(solver, CompactGameTree.of(tree), g);
+			System.out.println(String.format("   CFR: %5d iterations, exploitability %.6f", iterations, exploitability));
+			check(exploitability < previous, "CfrSolver: the exploitability did not shrink");
+			previous = exploitability;
+		}
+		check(previous < 1e-2, "CfrSolver: exploitability " + previous + " after 10000 iterations");
+		System.out.println("ok CfrSolver");
+	}
+
+	/*
+	 * Sum of what each player gains by best-responding to the average
+	 * strategy of the other, 0 at an equilibrium of a zero-sum game.
+	 */
+	private static double exploitability(CfrSolver solver, CompactGameTree tree, NormalFormGame g) {
+		double[] x = new double[g.nRow];
+		double[] y = new double[g.nCol];
+		InformationSetIndex sets = solver.getInformationSets();
+		for(int s = 0; s < sets.numberOfSets(); s++) {
+			String[] labels = sets.isPlayer1(s) ? g.rowLabels : g.colLabels;
+			double[] mix = sets.isPlayer1(s) ? x : y;
+			for(int k = sets.firstSlot(s); k < sets.firstSlot(s) + sets.numberOfActions(s); k++) {
+				String label = tree.labelOf(sets.labelId(k));
+				for(int i = 0; i < labels.length; i++) {
+					if(labels[i].equals(label))
+						mix[i] = solver.getAverageStrategy(k);
+				}
+			}
+		}
+		double[] rows = new double[g.nRow];
+		double[] cols = new double[g.nCol];
+		g.rowPayoffs(y, rows);
+		g.colPayoffs(x, cols);
+		return max(rows) + max(cols);
+	}
+
+	/*
+	 * Checks that no player gains by deviating to a pure strategy.
+	 */
+	private static void equilibrium(NormalFormGame g, Equilibrium e, String what) {
+		check(e != null, what + ": no equilibrium");
+		double[] rows = new double[g.nRow];
+		double[] cols = new double[g.nCol];
+		g.rowPayoffs(e.getColStrategy(), rows);
+		g.colPayoffs(e.getRowStrategy(), cols);
+		check(max(rows) <= g.expectedPayoffP1(e.getRowStrategy(), e.getColStrategy()) + EPS, what + ": player 1 gains by deviating");
+		check(max(cols) <= g.expectedPayoffP2(e.getRowStrategy(), e.getColStrategy()) + EPS, what + ": player 2 gains by deviating");
+	}
+
+	/*
+	 * A zero-sum game whose equilibrium is not uniform.
+	 */
+	private static MatrixGameSource skewedPennies() {
+		return new MatrixGameSource("SkewedPennies", new String[] { "Heads", "Tails" }, new String[] { "Heads", "Tails" },
+				new int[][] { { 2, -1 }, { -1, 1 } }, new int[][] { { -2, 1 }, { 1, -1 } });
+	}
+
+	private static NormalFormGame game(MatrixGameSource source) {
+		return NormalFormGame.fromTree(GameTree.fromSource(source));
+	}
+
+	private static double max(double[] values) {
+		double max = Double.NEGATIVE_INFINITY;
+		for(double v : values)
+			max = Math.max(max, v);
+		return max;
+	}
+
+	/*
+	 * Checks the strategies of an equilibrium, given by action name: the
+	 * order of the actions of a game extracted from a tree is that of the
+	 * children of its nodes, which is not the order of the source.
+	 */
+	private static void mix(NormalFormGame g, Equilibrium e, String[] actions, double[] row, double[] col, String what) {
+		check(e != null, what + ": no equilibrium");
+		for(int k = 0; k < actions.length; k++) {
+			near(e.getRowStrategy()[index(g.rowLabels, actions[k])], row[k], what + ", " + actions[k] + " of player 1");
+			near(e.getColStrategy()[index(g.colLabels, actions[k])], col[k], what + ", " + actions[k] + " of player 2");
+		}
+	}
+
+	private static int index(String[] labels, String action) {
+		for(int i = 0; i < labels.length; i++) {
+			if(labels[i].endsWith(":" + action))
+				return i;
+		}
+		throw new IllegalStateException("No action " + action);
+	}
+
+	private static void near(double actual, double expected, String what) {
+		check(Math.abs(actual - expected) <= EPS, what + ": " + actual + " instead of " + expected);
+	}
+
+	private static void check(boolean condition, String what) {
+		if(!condition)
+			throw new IllegalStateException(what);
+	}
+
+}
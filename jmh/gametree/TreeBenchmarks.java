@@ -0,0 +1,102 @@
+package gametree;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH benchmarks of the construction of game trees and of the lookup of
+ * their nodes, on synthetic trees (see SyntheticTreeSource) of the given
+ * branching and depth.
+ *
+ * build and cachedBuild are the two paths of GameTree.fromGameTreeClass:
+ * the first time a game is received its tree is built, later times it is
+ * found in the TreeCache. Lookups are measured over LOOKUPS random nodes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TreeBenchmarks {
+
+	private static final int LOOKUPS = 1024;
+
+	@Param({ "4" })
+	public int branching;
+
+	@Param({ "4", "8" })
+	public int depth;
+
+	private SyntheticTreeSource source;
+	private TreeCache cache;
+	private GameTree tree;
+	private int[] indexes;		// random node indexes
+	private String[][] paths;	// labels from the root to random terminal nodes
+
+	@Setup
+	public void setup() {
+		this.source = new SyntheticTreeSource(this.branching, this.depth, 0, 42);
+		this.cache = new TreeCache(1);
+		this.cache.get(this.source);
+		this.tree = GameTree.fromSource(this.source);
+		Random random = new Random(42);
+		this.indexes = new int[LOOKUPS];
+		for(int i = 0; i < LOOKUPS; i++)
+			this.indexes[i] = 1 + random.nextInt(this.source.size());
+		this.paths = new String[LOOKUPS][];
+		int[] path = new int[this.depth + 1];
+		int[] terminals = new int[this.source.size()];
+		int count = 0;
+		for(int index = 1; index <= this.source.size(); index++) {
+			if(this.tree.getNodeByIndex(index).isTerminal())
+				terminals[count++] = index;
+		}
+		for(int i = 0; i < LOOKUPS; i++) {
+			int terminal = terminals[random.nextInt(count)];
+			int length = this.tree.pathToRoot(terminal, path);
+			this.paths[i] = new String[length - 1];
+			for(int d = 1; d < length; d++)
+				this.paths[i][d - 1] = this.tree.getNodeByIndex(path[d]).getLabel();
+		}
+	}
+
+	@Benchmark
+	public GameTree build() {
+		return GameTree.fromSource(this.source);
+	}
+
+	@Benchmark
+	public GameTree cachedBuild() {
+		return this.cache.get(this.source);
+	}
+
+	@Benchmark
+	public void getNodeByIndex(Blackhole bh) {
+		for(int index : this.indexes)
+			bh.consume(this.tree.getNodeByIndex(index));
+	}
+
+	@Benchmark
+	public void getDescendant(Blackhole bh) throws GameNodeDoesNotExistException {
+		for(String[] path : this.paths) {
+			GameNode node = this.tree.getRootNode();
+			for(String label : path)
+				node = node.getDescendant(label);
+			bh.consume(node);
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package play;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gametree.GameTree;
+import gametree.SyntheticTreeSource;
+
+/**
+ * JMH benchmark of the construction of a NormalFormGame from a synthetic
+ * tree of depth 2 (see SyntheticTreeSource) with the given number of
+ * actions per player. The game is extracted anew in each invocation, as
+ * in the first round of a game, without the memoization of fromTree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NormalFormBenchmarks {
+
+	@Param({ "10", "100" })
+	public int actions;
+
+	private GameTree tree;
+
+	@Setup
+	public void setup() {
+		this.tree = GameTree.fromSource(new SyntheticTreeSource(this.actions, 2, 0, 42));
+	}
+
+	@Benchmark
+	public NormalFormGame fromTree() {
+		return NormalFormGame.extract(this.tree);
+	}
+}
@@ -0,0 +1,110 @@
+package play;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gametree.CompactGameTree;
+import gametree.GameNode;
+import gametree.GameTree;
+import gametree.SyntheticTreeSource;
+
+/**
+ * JMH benchmarks of the computations of the bundled strategies on
+ * synthetic trees (see SyntheticTreeSource): the response of
+ * MimicStrategy to the outcome of a round and the random strategy of
+ * RandomStrategy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StrategyBenchmarks {
+
+	private static final int OUTCOMES = 256;
+
+	@Param({ "3" })
+	public int branching;
+
+	@Param({ "4", "8" })
+	public int depth;
+
+	private GameTree tree;
+	private MimicStrategy mimic;
+	private RandomStrategy random;
+	private SimplexSampler sampler;
+	private GameNode[] outcomes;	// random terminal nodes
+	private int next = 0;
+	private int[] pathP1 = new int[16];
+	private int[] pathP2 = new int[16];
+	private Map<String, Double> response;
+	private LocalTournament.LocalRequest request;
+
+	@Setup
+	public void setup() {
+		this.tree = GameTree.fromSource(new SyntheticTreeSource(this.branching, this.depth, 0, 42));
+		List<String> keys = LocalTournament.keysOf(CompactGameTree.of(this.tree));
+		this.mimic = new MimicStrategy();
+		this.mimic.tree = this.tree;
+		this.random = new RandomStrategy();
+		this.random.tree = this.tree;
+		this.sampler = new SimplexSampler(42);
+		this.response = new LinkedHashMap<String, Double>();
+		for(String k : keys)
+			this.response.put(k, 0.0);
+		this.request = new LocalTournament.LocalRequest(keys, TimeUnit.HOURS.toMillis(1), 1, -1, -1, new int[4]);
+
+		CompactGameTree t = CompactGameTree.of(this.tree);
+		Random r = new Random(42);
+		this.outcomes = new GameNode[OUTCOMES];
+		for(int i = 0; i < OUTCOMES; i++) {
+			int p = 0;
+			while(!t.isTerminal(p))
+				p = t.firstChild(p) + r.nextInt(t.childCount(p));
+			this.outcomes[i] = this.tree.getNodeByIndex(t.indexAt(p));
+		}
+	}
+
+	private GameNode nextOutcome() {
+		this.next = (this.next + 1) & (OUTCOMES - 1);
+		return this.outcomes[this.next];
+	}
+
+	@Benchmark
+	public int[] mimicReversePath() {
+		this.pathP1 = this.mimic.getReversePath(nextOutcome(), this.pathP1);
+		return this.pathP1;
+	}
+
+	@Benchmark
+	public Map<String, Double> mimicComputeStrategy() {
+		GameNode finalP1 = nextOutcome();
+		GameNode finalP2 = nextOutcome();
+		this.pathP1 = this.mimic.getReversePath(finalP1, this.pathP1);
+		this.pathP2 = this.mimic.getReversePath(finalP2, this.pathP2);
+		this.mimic.cumputeStrategy(this.pathP1, this.tree.depth(finalP1.getValue()) + 1,
+				this.pathP2, this.tree.depth(finalP2.getValue()) + 1, this.response, this.sampler);
+		return this.response;
+	}
+
+	@Benchmark
+	public boolean randomFillStrategy() {
+		return this.random.fillStrategy(this.request);
+	}
+}
@@ -0,0 +1,3 @@
+#!/bin/bash
+mkdir -p bin-bench
+javac -cp bin/:lib/* -d bin-bench $(find bench -name '*.java') && java -cp bin/:bin-bench/:lib/* "$@"
@@ -0,0 +1,6 @@
+#!/bin/bash
+# Needs the JMH jars (jmh-core, jmh-generator-annprocess, jopt-simple and
+# commons-math3) in the lib-jmh directory. Arguments are passed to JMH, e.g.
+# ./runJmh.sh TreeBenchmarks -p depth=6
+mkdir -p bin-jmh
+javac -cp bin/:lib/*:lib-jmh/* -d bin-jmh $(find bench jmh -name '*.java') && java -cp bin/:bin-jmh/:lib/*:lib-jmh/* org.openjdk.jmh.Main -prof gc "$@"
@@ -0,0 +1,78 @@
+package gametree;
+
+/**
+ * Depth and binary-lifting ancestor tables over the positions of a tree in
+ * which every node comes after its ancestor (and the root is at position 0).
+ *
+ * up[k * size + p] holds the ancestor of p that is 2^k levels above it (or
+ * the root if there is no such ancestor), which answers ancestor-at-depth
+ * and lowest-common-ancestor queries in O(log depth) without allocating.
+ */
+class AncestorTable {
+
+	private final int size;
+	private final int[] depth;
+	private final int[] up;
+	private final int levels;
+	private final int maxDepth;
+
+	AncestorTable(int[] parent) {
+		this.size = parent.length;
+		this.depth = new int[this.size];
+		int max = 0;
+		for(int p = 1; p < this.size; p++) {
+			this.depth[p] = this.depth[parent[p]] + 1;
+			if(this.depth[p] > max) max = this.depth[p];
+		}
+		this.maxDepth = max;
+		this.levels = 32 - Integer.numberOfLeadingZeros(Math.max(1, max));
+		this.up = new int[this.levels * this.size];
+		for(int p = 0; p < this.size; p++)
+			this.up[p] = parent[p] < 0 ? p : parent[p];
+		for(int k = 1; k < this.levels; k++) {
+			int row = k * this.size;
+			int previous = row - this.size;
+			for(int p = 0; p < this.size; p++)
+				this.up[row + p] = this.up[previous + this.up[previous + p]];
+		}
+	}
+
+	int depth(int p) {
+		return this.depth[p];
+	}
+
+	int maxDepth() {
+		return this.maxDepth;
+	}
+
+	/*
+	 * Returns the ancestor of p at depth d, or -1 if d is not in [0, depth(p)].
+	 */
+	int ancestorAt(int p, int d) {
+		if(d < 0 || d > this.depth[p])
+			return -1;
+		int jump = this.depth[p] - d;
+		for(int k = 0; jump != 0; k++, jump >>>= 1) {
+			if((jump & 1) != 0)
+				p = this.up[k * this.size + p];
+		}
+		return p;
+	}
+
+	int lowestCommonAncestor(int a, int b) {
+		if(this.depth[a] > this.depth[b])
+			a = ancestorAt(a, this.depth[b]);
+		else if(this.depth[b] > this.depth[a])
+			b = ancestorAt(b, this.depth[a]);
+		if(a == b)
+			return a;
+		for(int k = this.levels - 1; k >= 0; k--) {
+			int row = k * this.size;
+			if(this.up[row + a] != this.up[row + b]) {
+				a = this.up[row + a];
+				b = this.up[row + b];
+			}
+		}
+		return this.up[a];
+	}
+}
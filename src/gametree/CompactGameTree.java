@@ -0,0 +1,292 @@
+package gametree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import tree.GameTreeClass;
+
+/**
+ * Struct-of-arrays representation of a game tree.
+ *
+ * Nodes are stored in breadth-first order and identified by their position
+ * in that order (the root is at position 0). Every attribute of a node is
+ * kept in a parallel primitive array, and the children of a node occupy the
+ * contiguous range of positions [firstChild, firstChild + childCount).
+ * Labels are stored once in a SymbolTable and referenced by id.
+ *
+ * The GameNode instances exposed through GameTreeInterface are lightweight
+ * read-only views over these arrays (see FlatGameTree).
+ */
+public class CompactGameTree extends FlatGameTree {
+
+	private final int size;
+	private final int[] value;
+	private final int[] parent;
+	private final int[] firstChild;
+	private final int[] childCount;
+	private final byte[] kind;
+	private final double[] weight;
+	private final int[] payoffP1;
+	private final int[] payoffP2;
+	private final int[] label;
+	private final int[] outcome;
+	private final SymbolTable symbols;
+
+	private final NodeIndex nodeIndex;
+	private final List<Integer> validationSet;
+
+	private CompactGameTree(Builder b, List<Integer> validationSet) {
+		super(b.size);
+		this.size = b.size;
+		this.value = Arrays.copyOf(b.value, b.size);
+		this.parent = Arrays.copyOf(b.parent, b.size);
+		this.firstChild = Arrays.copyOf(b.firstChild, b.size);
+		this.childCount = Arrays.copyOf(b.childCount, b.size);
+		this.kind = Arrays.copyOf(b.kind, b.size);
+		this.weight = Arrays.copyOf(b.weight, b.size);
+		this.payoffP1 = Arrays.copyOf(b.payoffP1, b.size);
+		this.payoffP2 = Arrays.copyOf(b.payoffP2, b.size);
+		this.label = Arrays.copyOf(b.label, b.size);
+		this.outcome = Arrays.copyOf(b.outcome, b.size);
+		this.symbols = b.symbols;
+		this.nodeIndex = NodeIndex.of(this.value, this.size);
+		this.validationSet = validationSet;
+	}
+
+	/**
+	 * Builds the compact representation of the tree described by gtc.
+	 * @param gtc the game tree as received from the game engine.
+	 * @return a new CompactGameTree.
+	 */
+	public static CompactGameTree fromGameTreeClass(GameTreeClass gtc) {
+		return fromSource(new GameTreeClassSource(gtc));
+	}
+
+	/**
+	 * Builds the compact representation of the tree described by source.
+	 * @param source the description of the tree.
+	 * @return a new CompactGameTree.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <N> CompactGameTree fromSource(TreeSource<N> source) {
+		Builder b = new Builder();
+		Object[] order = new Object[64];
+		N root = source.getRoot();
+		order[0] = root;
+		b.add(-1, source.getLabel(root), 0, source.getValue(root), NodeKind.parse(source.getType(root)).code(), "");
+
+		for(int p = 0; p < b.size; p++) {
+			N node = (N) order[p];
+			N[] descendants = source.getChildren(node);
+			double[] descendantsWeight = source.getChildrenWeight(node);
+			String[] descendantsOutcome = source.getOutcome(node);
+			if(descendants.length == 0) { //Is a terminal node
+				b.payoffP1[p] = Integer.parseInt(descendantsOutcome[0]);
+				b.payoffP2[p] = Integer.parseInt(descendantsOutcome[1]);
+				continue;
+			}
+			b.firstChild[p] = b.size;
+			b.childCount[p] = descendants.length;
+			for(int i = 0; i < descendants.length; i++) {
+				if(b.size == order.length)
+					order = Arrays.copyOf(order, order.length * 2);
+				order[b.size] = descendants[i];
+				b.add(p, descendantsOutcome[i], descendantsWeight[i], source.getValue(descendants[i]),
+						NodeKind.parse(source.getType(descendants[i])).code(), source.getLabel(descendants[i]));
+			}
+		}
+		return new CompactGameTree(b, flatten(source.getPossibilities()));
+	}
+
+	/**
+	 * Builds the compact representation of an already built GameTree, for
+	 * instance the one made available to strategies by the game engine.
+	 * @param t the source tree.
+	 * @return a new CompactGameTree with the same nodes, labels and indexes.
+	 */
+	public static CompactGameTree fromGameTree(GameTree t) {
+		Builder b = new Builder();
+		GameNode[] order = new GameNode[64];
+		GameNode root = t.getRootNode();
+		order[0] = root;
+		b.add(-1, root.getLabel(), root.getWeight(), root.getValue(), root.kind().code(), root.getOutcome());
+
+		for(int p = 0; p < b.size; p++) {
+			GameNode node = order[p];
+			if(node.numberOfChildren() == 0) {
+				b.payoffP1[p] = node.getPayoffP1();
+				b.payoffP2[p] = node.getPayoffP2();
+				continue;
+			}
+			b.firstChild[p] = b.size;
+			b.childCount[p] = node.numberOfChildren();
+			Iterator<GameNode> children = node.getChildren();
+			while(children.hasNext()) {
+				GameNode child = children.next();
+				if(b.size == order.length)
+					order = Arrays.copyOf(order, order.length * 2);
+				order[b.size] = child;
+				b.add(p, child.getLabel(), child.getWeight(), child.getValue(), child.kind().code(), child.getOutcome());
+			}
+		}
+		return new CompactGameTree(b, new ArrayList<Integer>(t.getValidationSet()));
+	}
+
+	/**
+	 * Returns the compact representation of a GameTree, built once and
+	 * memoized on the tree (see GameTree.getAttachment), so that the solvers
+	 * that need it in later rounds, or later games with the same tree, share
+	 * the same instance.
+	 * @param t the source tree.
+	 * @return the CompactGameTree of t.
+	 */
+	public static CompactGameTree of(GameTree t) {
+		return t.getAttachment(CompactGameTree.class, CompactGameTree::fromGameTree);
+	}
+
+	private static List<Integer> flatten(List<List<Integer>> possibilities) {
+		List<Integer> l = new ArrayList<Integer>();
+		for(int i = 0; i < possibilities.size(); i++) {
+			for(int j = 0; j < possibilities.get(i).size(); j++)
+				l.add(possibilities.get(i).get(j));
+		}
+		return l;
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public int positionOf(int index) {
+		return this.nodeIndex.get(index);
+	}
+
+	@Override
+	public int indexAt(int position) {
+		return this.value[position];
+	}
+
+	@Override
+	public int parent(int position) {
+		return this.parent[position];
+	}
+
+	@Override
+	public int firstChild(int position) {
+		return this.firstChild[position];
+	}
+
+	@Override
+	public int childCount(int position) {
+		return this.childCount[position];
+	}
+
+	@Override
+	public byte kindCode(int position) {
+		return this.kind[position];
+	}
+
+	@Override
+	public double weight(int position) {
+		return this.weight[position];
+	}
+
+	@Override
+	public int payoffP1(int position) {
+		return this.payoffP1[position];
+	}
+
+	@Override
+	public int payoffP2(int position) {
+		return this.payoffP2[position];
+	}
+
+	@Override
+	public int labelId(int position) {
+		return this.label[position];
+	}
+
+	@Override
+	public int outcomeId(int position) {
+		return this.outcome[position];
+	}
+
+	@Override
+	public String labelOf(int id) {
+		return this.symbols.symbol(id);
+	}
+
+	@Override
+	public int numberOfLabels() {
+		return this.symbols.size();
+	}
+
+	/**
+	 * @return the table with the labels (and node names) of this tree.
+	 */
+	public SymbolTable getSymbolTable() {
+		return this.symbols;
+	}
+
+	/**
+	 * @return the node index of this tree.
+	 */
+	NodeIndex getNodeIndex() {
+		return this.nodeIndex;
+	}
+
+	/* (non-Javadoc)
+	 * @see gametree.GameTreeInterface#getValidationSet()
+	 */
+	public List<Integer> getValidationSet() {
+		return this.validationSet;
+	}
+
+	/**
+	 * Growable arrays used while the tree is being built.
+	 */
+	private static class Builder {
+		int size = 0;
+		int[] value = new int[64];
+		int[] parent = new int[64];
+		int[] firstChild = new int[64];
+		int[] childCount = new int[64];
+		byte[] kind = new byte[64];
+		double[] weight = new double[64];
+		int[] payoffP1 = new int[64];
+		int[] payoffP2 = new int[64];
+		int[] label = new int[64];
+		int[] outcome = new int[64];
+		SymbolTable symbols = new SymbolTable();
+
+		void add(int parent, String label, double weight, int value, byte kind, String outcome) {
+			if(this.size == this.value.length)
+				grow();
+			this.value[this.size] = value;
+			this.parent[this.size] = parent;
+			this.kind[this.size] = kind;
+			this.weight[this.size] = weight;
+			this.label[this.size] = this.symbols.intern(label);
+			this.outcome[this.size] = this.symbols.intern(outcome);
+			this.size++;
+		}
+
+		private void grow() {
+			int n = this.value.length * 2;
+			this.value = Arrays.copyOf(this.value, n);
+			this.parent = Arrays.copyOf(this.parent, n);
+			this.firstChild = Arrays.copyOf(this.firstChild, n);
+			this.childCount = Arrays.copyOf(this.childCount, n);
+			this.kind = Arrays.copyOf(this.kind, n);
+			this.weight = Arrays.copyOf(this.weight, n);
+			this.payoffP1 = Arrays.copyOf(this.payoffP1, n);
+			this.payoffP2 = Arrays.copyOf(this.payoffP2, n);
+			this.label = Arrays.copyOf(this.label, n);
+			this.outcome = Arrays.copyOf(this.outcome, n);
+		}
+	}
+}
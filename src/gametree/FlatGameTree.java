@@ -0,0 +1,427 @@
+package gametree;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Base class of the game trees whose nodes are stored in flat, primitive
+ * storage rather than as GameNode objects (see CompactGameTree and 
+ * MappedGameTree).
+ *
+ * Nodes are identified by their position in the storage: the root is at
+ * position 0, every node comes before its descendants and the children of
+ * a node occupy the contiguous range of positions 
+ * [firstChild, firstChild + childCount). Solvers are expected to use the
+ * accessors over positions directly; GameTreeInterface is implemented on
+ * top of them, through read-only GameNode views created on demand.
+ */
+public abstract class FlatGameTree implements GameTreeInterface {
+
+	private static final byte PLAYER1 = NodeKind.PLAYER1.code();
+	private static final byte PLAYER2 = NodeKind.PLAYER2.code();
+	private static final byte NATURE = NodeKind.NATURE.code();
+	private static final byte TERMINAL = NodeKind.TERMINAL.code();
+
+	private final GameNode[] views;
+	private int current;
+
+	protected FlatGameTree(int size) {
+		this.views = new GameNode[size];
+		this.current = 0;
+	}
+
+	/**
+	 * @return the number of nodes in the tree.
+	 */
+	public abstract int size();
+
+	/**
+	 * Returns the position of the node identified by the unique index
+	 * used by the game engine (see getNodeByIndex).
+	 * @param index the unique index of the node.
+	 * @return the position of the node, -1 if no such node exists.
+	 */
+	public abstract int positionOf(int index);
+
+	/**
+	 * @param position position of a node.
+	 * @return the unique index of the node at position.
+	 */
+	public abstract int indexAt(int position);
+
+	/**
+	 * @param position position of a node.
+	 * @return the position of the ancestor of the node, -1 for the root.
+	 */
+	public abstract int parent(int position);
+
+	/**
+	 * @param position position of a node.
+	 * @return the position of the first child of the node. Meaningless
+	 * if the node has no children.
+	 */
+	public abstract int firstChild(int position);
+
+	/**
+	 * @param position position of a node.
+	 * @return the number of children of the node.
+	 */
+	public abstract int childCount(int position);
+
+	/**
+	 * @param position position of a node.
+	 * @return the kind of the node.
+	 */
+	public NodeKind kind(int position) {
+		return NodeKind.fromCode(kindCode(position));
+	}
+
+	/**
+	 * @param position position of a node.
+	 * @return the code (see NodeKind.code()) of the kind of the node.
+	 */
+	public abstract byte kindCode(int position);
+
+	public boolean isTerminal(int position) {
+		return kindCode(position) == TERMINAL;
+	}
+
+	public boolean isNature(int position) {
+		return kindCode(position) == NATURE;
+	}
+
+	public boolean isPlayer1(int position) {
+		return kindCode(position) == PLAYER1;
+	}
+
+	public boolean isPlayer2(int position) {
+		return kindCode(position) == PLAYER2;
+	}
+
+	/**
+	 * @param position position of a node.
+	 * @return the probability of reaching the node from a nature ancestor.
+	 */
+	public abstract double weight(int position);
+
+	/**
+	 * @param position position of a node.
+	 * @return the payoff of player 1 at the node, if it is terminal.
+	 */
+	public abstract int payoffP1(int position);
+
+	/**
+	 * @param position position of a node.
+	 * @return the payoff of player 2 at the node, if it is terminal.
+	 */
+	public abstract int payoffP2(int position);
+
+	/**
+	 * @param position position of a node.
+	 * @return the id of the label of the edge leading to the node.
+	 */
+	public abstract int labelId(int position);
+
+	/**
+	 * @param position position of a node.
+	 * @return the id of the String returned by GameNode.getOutcome()
+	 * for the node.
+	 */
+	public abstract int outcomeId(int position);
+
+	/**
+	 * @param id a label id, as returned by labelId or outcomeId.
+	 * @return the label with that id.
+	 */
+	public abstract String labelOf(int id);
+
+	/**
+	 * @return the number of distinct labels in the tree.
+	 */
+	public abstract int numberOfLabels();
+
+	/**
+	 * Returns the ranges of positions of the levels of the tree, when the
+	 * nodes are stored level by level (breadth-first, as in CompactGameTree).
+	 * The nodes of a level do not depend on each other, so solvers can
+	 * split a level across threads.
+	 * @return the first position of each level followed by size(), or null
+	 * if the levels are not contiguous ranges of positions.
+	 */
+	public int[] levels() {
+		int n = size();
+		int[] depth = new int[n];
+		int[] levels = new int[8];
+		int count = 1;
+		for(int p = 1; p < n; p++) {
+			depth[p] = depth[parent(p)] + 1;
+			if(depth[p] < depth[p - 1])
+				return null;
+			if(depth[p] > depth[p - 1]) {
+				if(count == levels.length)
+					levels = Arrays.copyOf(levels, count * 2);
+				levels[count++] = p;
+			}
+		}
+		if(count == levels.length)
+			levels = Arrays.copyOf(levels, count + 1);
+		levels[count++] = n;
+		return Arrays.copyOf(levels, count);
+	}
+
+	/**
+	 * Returns the position of the child of a node reached through the edge
+	 * with the given label.
+	 * @param position position of a node.
+	 * @param label the label of the edge.
+	 * @return the position of the child, -1 if no such child exists.
+	 */
+	public int childByLabel(int position, String label) {
+		int first = firstChild(position);
+		for(int c = first; c < first + childCount(position); c++) {
+			if(labelOf(labelId(c)).equals(label))
+				return c;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the view of the node at position.
+	 * @param position position of a node.
+	 * @return a read-only GameNode for that node.
+	 */
+	public GameNode nodeAt(int position) {
+		GameNode n = this.views[position];
+		if(n == null) {
+			n = new NodeView(position);
+			this.views[position] = n;
+		}
+		return n;
+	}
+
+	/* (non-Javadoc)
+	 * @see gametree.GameTreeInterface#getRootNode()
+	 */
+	public GameNode getRootNode() {
+		return nodeAt(0);
+	}
+
+	/* (non-Javadoc)
+	 * @see gametree.GameTreeInterface#getCurrentNode()
+	 */
+	public GameNode getCurrentNode() {
+		return nodeAt(this.current);
+	}
+
+	/* (non-Javadoc)
+	 * @see gametree.GameTreeInterface#reset()
+	 */
+	public void reset() {
+		this.current = 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see gametree.GameTreeInterface#goUp()
+	 */
+	public boolean goUp() {
+		if(parent(this.current) < 0)
+			return false;
+		this.current = parent(this.current);
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see gametree.GameTreeInterface#numberOfChildren()
+	 */
+	public int numberOfChildren() {
+		return childCount(this.current);
+	}
+
+	/* (non-Javadoc)
+	 * @see gametree.GameTreeInterface#goDown(java.lang.String)
+	 */
+	public boolean goDown(String label) {
+		int c = childByLabel(this.current, label);
+		if(c < 0)
+			return false;
+		this.current = c;
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see gametree.GameTreeInterface#setCurrentNode(int)
+	 */
+	public boolean setCurrentNode(int index) {
+		int p = positionOf(index);
+		if(p < 0)
+			return false;
+		this.current = p;
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see gametree.GameTreeInterface#getNodeByIndex(int)
+	 */
+	public GameNode getNodeByIndex(int index) {
+		int p = positionOf(index);
+		if(p < 0)
+			return null;
+		return nodeAt(p);
+	}
+
+	/**
+	 * Read-only GameNode backed by the storage of the enclosing tree.
+	 */
+	private class NodeView extends GameNode {
+
+		private final int position;
+
+		NodeView(int position) {
+			this.position = position;
+		}
+
+		@Override
+		public boolean isRoot() {
+			return parent(this.position) < 0;
+		}
+
+		@Override
+		public boolean isTerminal() {
+			return FlatGameTree.this.isTerminal(this.position);
+		}
+
+		@Override
+		public boolean isNature() {
+			return FlatGameTree.this.isNature(this.position);
+		}
+
+		@Override
+		public boolean isPlayer1() {
+			return FlatGameTree.this.isPlayer1(this.position);
+		}
+
+		@Override
+		public boolean isPlayer2() {
+			return FlatGameTree.this.isPlayer2(this.position);
+		}
+
+		@Override
+		public NodeKind kind() {
+			return FlatGameTree.this.kind(this.position);
+		}
+
+		@Override
+		public String getOutcome() {
+			return labelOf(outcomeId(this.position));
+		}
+
+		@Override
+		public GameNode getAncestor() throws GameNodeDoesNotExistException {
+			if(parent(this.position) >= 0)
+				return nodeAt(parent(this.position));
+			else
+				throw new GameNodeDoesNotExistException("Root node does not have an ancestor");
+		}
+
+		@Override
+		public GameNode getDescendant(String label) throws GameNodeDoesNotExistException {
+			int c = childByLabel(this.position, label);
+			if(c >= 0)
+				return nodeAt(c);
+			else
+				if(childCount(this.position) > 0)
+					throw new GameNodeDoesNotExistException("Node with label '" + getLabel() + "' does not have a descendeant with label + '" + label + "'.");
+				else
+					throw new GameNodeDoesNotExistException("node with label '" + getLabel() + "' is terminal.");
+		}
+
+		@Override
+		public Iterator<String> getChildrenLabels() {
+			final Iterator<GameNode> children = getChildren();
+			return new Iterator<String>() {
+				public boolean hasNext() {
+					return children.hasNext();
+				}
+
+				public String next() {
+					return children.next().getLabel();
+				}
+			};
+		}
+
+		@Override
+		public Iterator<GameNode> getChildren() {
+			final int first = firstChild(this.position);
+			final int last = first + childCount(this.position);
+			return new Iterator<GameNode>() {
+				private int next = first;
+
+				public boolean hasNext() {
+					return this.next < last;
+				}
+
+				public GameNode next() {
+					if(this.next >= last)
+						throw new NoSuchElementException();
+					return nodeAt(this.next++);
+				}
+			};
+		}
+
+		@Override
+		public int numberOfChildren() {
+			return childCount(this.position);
+		}
+
+		@Override
+		public void addChild(GameNode child) {
+			throw new UnsupportedOperationException("Nodes of a flat game tree are read-only");
+		}
+
+		@Override
+		public String getLabel() {
+			return labelOf(labelId(this.position));
+		}
+
+		@Override
+		public int getLabelId() {
+			return labelId(this.position);
+		}
+
+		@Override
+		public double getWeight() {
+			return weight(this.position);
+		}
+
+		@Override
+		public int getValue() {
+			return indexAt(this.position);
+		}
+
+		@Override
+		public String toString() {
+			return getLabel() + " (" + getValue() + ")" ;
+		}
+
+		@Override
+		public void setPayoffP1(int payoff) {
+			throw new UnsupportedOperationException("Nodes of a flat game tree are read-only");
+		}
+
+		@Override
+		public void setPayoffP2(int payoff) {
+			throw new UnsupportedOperationException("Nodes of a flat game tree are read-only");
+		}
+
+		@Override
+		public int getPayoffP1() {
+			return payoffP1(this.position);
+		}
+
+		@Override
+		public int getPayoffP2() {
+			return payoffP2(this.position);
+		}
+	}
+}
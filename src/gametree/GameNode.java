@@ -8,20 +8,29 @@ public class GameNode implements GameNodeInterface {
 
 	private GameNode ancestor;
 	private String label;
+	private int labelId;
 	private Map<String,GameNode> children;
 	private double weight;
 	private int value;
-	private String type;
+	private NodeKind kind;
 	private String outcome;
 	private int terminalOutcomeP1;
 	private int terminalOutcomeP2;
 	
+	/*
+	 * Used by the flat tree representations, whose nodes are views over
+	 * primitive arrays and override every accessor of this class.
+	 */
+	GameNode() {
+	}
+	
 	public GameNode(String label, double weight, int value, String type, String outcome) {
 		this.ancestor = null;
 		this.label = label;
+		this.labelId = -1;
 		this.weight = weight;
 		this.value = value;
-		this.type = type;
+		this.kind = NodeKind.parse(type);
 		this.outcome = outcome;
 		this.children = new HashMap<String,GameNode>();
 		this.terminalOutcomeP1 = 0;
@@ -31,9 +40,10 @@ public class GameNode implements GameNodeInterface {
 	public GameNode(GameNode ancestor, String label, double weight, int value, String type, String outcome) {
 		this.ancestor = ancestor;
 		this.label = label;
+		this.labelId = -1;
 		this.weight = weight;
 		this.value = value;
-		this.type = type;
+		this.kind = NodeKind.parse(type);
 		this.outcome = outcome;
 		this.children = new HashMap<String,GameNode>();
 		this.terminalOutcomeP1 = 0;
@@ -51,28 +61,35 @@ public class GameNode implements GameNodeInterface {
 	 * @see gametree.GameNodeInterface#isTerminal()
 	 */
 	public boolean isTerminal() {
-		return this.type.compareToIgnoreCase("t") == 0;
+		return this.kind == NodeKind.TERMINAL;
 	}
 	
 	/* (non-Javadoc)
 	 * @see gametree.GameNodeInterface#isNature()
 	 */
 	public boolean isNature() {
-		return this.type.compareToIgnoreCase("c") == 0;
+		return this.kind == NodeKind.NATURE;
 	}
 	
 	/* (non-Javadoc)
 	 * @see gametree.GameNodeInterface#isPlayer1()
 	 */
 	public boolean isPlayer1() {
-		return this.type.compareToIgnoreCase("P1") == 0;
+		return this.kind == NodeKind.PLAYER1;
 	}
 	
 	/* (non-Javadoc)
 	 * @see gametree.GameNodeInterface#isPlayer2()
 	 */
 	public boolean isPlayer2() {
-		return this.type.compareToIgnoreCase("P2") == 0;
+		return this.kind == NodeKind.PLAYER2;
+	}
+	
+	/* (non-Javadoc)
+	 * @see gametree.GameNodeInterface#kind()
+	 */
+	public NodeKind kind() {
+		return this.kind;
 	}
 	
 	/* (non-Javadoc)
@@ -140,6 +157,24 @@ public class GameNode implements GameNodeInterface {
 		return label;
 	}
 
+	/**
+	 * Returns the id of the label of this node in the SymbolTable of
+	 * the tree that contains it.
+	 * @return the id of the label, -1 if the node was not built as part 
+	 * of a tree.
+	 */
+	public int getLabelId() {
+		return labelId;
+	}
+
+	/*
+	 * Replaces the label of this node with its canonical instance in symbols.
+	 */
+	void internLabel(SymbolTable symbols) {
+		this.labelId = symbols.intern(this.label);
+		this.label = symbols.symbol(this.labelId);
+	}
+
 	/* (non-Javadoc)
 	 * @see gametree.GameNodeInterface#getWeight()
 	 */
@@ -41,6 +41,14 @@ public interface GameNodeInterface {
 	 */
 	boolean isPlayer2();
 
+	/**
+	 * This method returns the kind of the current node, parsed once from
+	 * the type of the node when the tree was built. Traversal code can 
+	 * switch on the returned value instead of calling the predicates above.
+	 * @return the kind of the current node.
+	 */
+	NodeKind kind();
+
 	/**
 	 * If this is a terminal node, this returns a String representation of
 	 * the outcome represented by this node. If the node is not terminal
@@ -1,25 +1,43 @@
 package gametree;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 import tree.GameTreeClass;
-import tree.Node;
 
 public class GameTree implements GameTreeInterface {
 	
 	private GameNode root;
 	private GameNode current;
 	
-	private Map<Integer, GameNode> nodeIndex;
+	/* Trees estimated to have fewer nodes than this are built sequentially: with two workers 
+	 * the parallel build pays off from 500 to 1400 nodes, depending on the branching (see TreeBuildBenchmark) */
+	static final long PARALLEL_THRESHOLD = 2048;
+	/* Number of fork-join tasks created per worker when building in parallel */
+	private static final int TASKS_PER_THREAD = 4;
+	/* Number of trees received from the game engine, guarded by (and notified on) the lock */
+	private static final Object publicationLock = new Object();
+	private static long publications = 0;
+	
+	private GameNode[] nodes;
+	private int[] values;
+	private NodeIndex nodeIndex;
+	private volatile AncestorTable ancestors;
+	private final GameTree origin;	// the tree whose data this one shares, itself if it was built
+	private final SymbolTable symbols;
+	private final ConcurrentMap<Object, Object> attachments;
 	private final List<Integer> validationSet;
 	
 	private GameTree(List<List<Integer>> validationSet) { 
-		this.nodeIndex = new HashMap<Integer, GameNode>();
+		this.origin = this;
+		this.symbols = new SymbolTable();
+		this.attachments = new ConcurrentHashMap<Object, Object>();
 		this.validationSet = new ArrayList<Integer>();
 		for(int i = 0; i < validationSet.size(); i++) {
 			for(int j = 0; j < validationSet.get(i).size(); j++) 
@@ -27,6 +45,33 @@ public class GameTree implements GameTreeInterface {
 		}
 	}
 	
+	/*
+	 * A tree over the nodes, labels and attachments of origin, with its
+	 * own current node.
+	 */
+	private GameTree(GameTree origin) {
+		this.origin = origin;
+		this.root = origin.root;
+		this.nodes = origin.nodes;
+		this.values = origin.values;
+		this.nodeIndex = origin.nodeIndex;
+		this.symbols = origin.symbols;
+		this.attachments = origin.attachments;
+		this.validationSet = origin.validationSet;
+		this.current = this.root;
+	}
+	
+	/**
+	 * Returns a GameTree that shares the nodes, the symbol table and the
+	 * attachments of this one, none of which change once the tree is 
+	 * built, but has its own current node, at the root. Callers that 
+	 * navigate a shared tree (see TreeCache) each use their own view.
+	 * @return a new view of this tree.
+	 */
+	public GameTree view() {
+		return new GameTree(this.origin);
+	}
+	
 	/* (non-Javadoc)
 	 * @see gametree.GameTreeInterface#getRootNode()
 	 */
@@ -87,8 +132,9 @@ public class GameTree implements GameTreeInterface {
 	 * @see gametree.GameTreeInterface#setCurrentNode(int)
 	 */
 	public boolean setCurrentNode(int index) {
-		if(this.nodeIndex.containsKey(index)) {
-			this.current = this.nodeIndex.get(index);
+		int p = this.nodeIndex.get(index);
+		if(p >= 0) {
+			this.current = this.nodes[p];
 			return true;
 		}
 		return false;
@@ -98,48 +144,373 @@ public class GameTree implements GameTreeInterface {
 	 * @see gametree.GameTreeInterface#getNodeByIndex(int)
 	 */
 	public GameNode getNodeByIndex(int index) {
-		if(this.nodeIndex.containsKey(index)) {
-			return this.nodeIndex.get(index);
+		int p = this.nodeIndex.get(index);
+		if(p >= 0) {
+			return this.nodes[p];
 		}
 		return null;
 	}
 	
-	private void build(GameTreeClass gtc) {
-		Queue<ProcessUnit> queue = new LinkedList<ProcessUnit>();
+	/*
+	 * Builds the tree in the calling thread. The nodes are created by the
+	 * same depth-first expansion that each fork-join task runs on its
+	 * subtree (see buildSubtree), so that both builds do the same work per
+	 * node, and labels are interned in a single pass, as in buildParallel.
+	 */
+	private <N> void build(TreeSource<N> source) {
+		N root = source.getRoot();
+		this.root = new GameNode(source.getLabel(root), 0 , source.getValue(root), source.getType(root), "");
+		List<GameNode> order = new ArrayList<GameNode>();
+		order.add(this.root);
+		buildSubtree(source, root, this.root, order);
 		
-		Node root = gtc.getCurrent();
-		this.root = new GameNode(root.getLabel(), 0 , root.getValue(), root.getType(), "");
-		queue.add(new ProcessUnit(root, this.root));
-		//System.out.println("Adding processing of node queue. ROOT");
-		this.nodeIndex.put(root.getValue(), this.root);
+		GameNode[] nodes = order.toArray(new GameNode[order.size()]);
+		for(int p = 0; p < nodes.length; p++)
+			nodes[p].internLabel(this.symbols);
+		index(nodes);
+	}
+	
+	/*
+	 * Builds the tree with fork-join tasks. The top levels of the tree are 
+	 * split into one task per subtree until there are enough tasks to keep
+	 * all workers of the pool busy, and each task then builds its subtree 
+	 * sequentially. Labels are interned afterwards, in a single pass, so
+	 * that their ids do not depend on scheduling.
+	 */
+	private <N> void buildParallel(TreeSource<N> source, ForkJoinPool pool) {
+		N root = source.getRoot();
+		this.root = new GameNode(source.getLabel(root), 0 , source.getValue(root), source.getType(root), "");
+		int splitDepth = splitDepth(source.getPossibilities(), pool.getParallelism() * TASKS_PER_THREAD);
+		List<GameNode> order = pool.invoke(new BuildTask<N>(source, root, this.root, 0, splitDepth));
 		
-		while(!queue.isEmpty()) {
-			ProcessUnit pu = queue.remove();
-			Node[] descendants = pu.node.getChildren();
-			double[] descendantsWeight = pu.node.getChildrenWeight();
-			String[] descendantsOutcome = pu.node.getOutcome();
-			if(descendants.length == 0) { //Is a terminal node
-				pu.n.setPayoffP1(Integer.parseInt(descendantsOutcome[0]));
-				pu.n.setPayoffP2(Integer.parseInt(descendantsOutcome[1]));
+		GameNode[] nodes = order.toArray(new GameNode[order.size()]);
+		for(int p = 0; p < nodes.length; p++)
+			nodes[p].internLabel(this.symbols);
+		index(nodes);
+	}
+	
+	/*
+	 * Creates (and attaches to n) the nodes for the descendants of node, 
+	 * or sets the payoffs of n if node is terminal. 
+	 */
+	private static <N> N[] expand(TreeSource<N> source, N node, GameNode n, List<GameNode> order) {
+		N[] descendants = source.getChildren(node);
+		double[] descendantsWeight = source.getChildrenWeight(node);
+		String[] descendantsOutcome = source.getOutcome(node);
+		if(descendants.length == 0) { //Is a terminal node
+			n.setPayoffP1(Integer.parseInt(descendantsOutcome[0]));
+			n.setPayoffP2(Integer.parseInt(descendantsOutcome[1]));
+		}
+		for(int i = 0; i < descendants.length; i++) {
+			GameNode child = new GameNode(n, descendantsOutcome[i], descendantsWeight[i], source.getValue(descendants[i]), source.getType(descendants[i]), source.getLabel(descendants[i]));
+			n.addChild(child);
+			order.add(child);
+		}
+		return descendants;
+	}
+	
+	/*
+	 * Depth-first expansion of the subtree of node (whose GameNode n is
+	 * already in order), with an explicit stack. The children of each node
+	 * are appended to order together, after their parent.
+	 */
+	private static <N> List<GameNode> buildSubtree(TreeSource<N> source, N node, GameNode n, List<GameNode> order) {
+		List<N> pending = new ArrayList<N>();
+		List<GameNode> pendingNodes = new ArrayList<GameNode>();
+		pending.add(node);
+		pendingNodes.add(n);
+		while(!pending.isEmpty()) {
+			N next = pending.remove(pending.size() - 1);
+			GameNode nextNode = pendingNodes.remove(pendingNodes.size() - 1);
+			int first = order.size();
+			N[] descendants = expand(source, next, nextNode, order);
+			for(int i = descendants.length - 1; i >= 0; i--) {
+				pending.add(descendants[i]);
+				pendingNodes.add(order.get(first + i));
 			}
-			for(int i = 0; i < descendants.length; i++) {
-				//System.out.println("Adding processing of node queue. Outcome: " + descendantsOutcome[i] + " label: " + descendants[i].getLabel());
-				GameNode child = new GameNode(pu.n, descendantsOutcome[i], descendantsWeight[i], descendants[i].getValue(), descendants[i].getType(), descendants[i].getLabel());
-				pu.n.addChild(child);
-				this.nodeIndex.put(child.getValue(), child);
-				queue.add(new ProcessUnit(descendants[i], child));
+		}
+		return order;
+	}
+	
+	/*
+	 * Returns the depth at which the tree has at least the given number 
+	 * of subtrees, estimated from the possible moves at each depth.
+	 */
+	static int splitDepth(List<List<Integer>> possibilities, int subtrees) {
+		long width = 1;
+		int depth = 0;
+		while(width < subtrees && depth < possibilities.size()) {
+			width *= maxMoves(possibilities.get(depth));
+			depth++;
+		}
+		return depth;
+	}
+	
+	/*
+	 * Estimates the number of nodes of a tree from the possible moves at 
+	 * each depth. This is exact for trees in which all nodes at the same
+	 * depth have the same number of moves.
+	 */
+	static long estimateSize(List<List<Integer>> possibilities) {
+		long width = 1;
+		long total = 1;
+		for(int depth = 0; depth < possibilities.size() && total < Integer.MAX_VALUE; depth++) {
+			width *= maxMoves(possibilities.get(depth));
+			total += width;
+		}
+		return total;
+	}
+	
+	private static int maxMoves(List<Integer> moves) {
+		int max = 1;
+		for(int i = 0; i < moves.size(); i++)
+			max = Math.max(max, moves.get(i).intValue());
+		return max;
+	}
+	
+	/*
+	 * Installs the dense node index over nodes, given in an order in which
+	 * every node precedes its descendants (and the root comes first).
+	 */
+	private void index(GameNode[] nodes) {
+		int[] keys = new int[nodes.length];
+		for(int p = 0; p < nodes.length; p++)
+			keys[p] = nodes[p].getValue();
+		this.nodes = nodes;
+		this.values = keys;
+		this.nodeIndex = NodeIndex.of(keys, nodes.length);
+	}
+	
+	/*
+	 * The depth and ancestor tables are computed on first use.
+	 */
+	private AncestorTable ancestors() {
+		if(this.origin != this)
+			return this.origin.ancestors();
+		AncestorTable a = this.ancestors;
+		if(a == null) {
+			synchronized(this) {
+				a = this.ancestors;
+				if(a == null) {
+					int[] parent = new int[this.nodes.length];
+					parent[0] = -1;
+					for(int p = 1; p < this.nodes.length; p++) {
+						try {
+							parent[p] = this.nodeIndex.get(this.nodes[p].getAncestor().getValue());
+						} catch (GameNodeDoesNotExistException e) {
+							parent[p] = -1;
+						}
+					}
+					a = new AncestorTable(parent);
+					this.ancestors = a;
+				}
 			}
 		}
-		
+		return a;
+	}
+	
+	/**
+	 * Returns the depth of a node, the root being at depth 0.
+	 * @param index the unique index of a node.
+	 * @return the depth of the node, -1 if the tree has no node 
+	 * identified by index.
+	 */
+	public int depth(int index) {
+		int p = this.nodeIndex.get(index);
+		return p < 0 ? -1 : ancestors().depth(p);
+	}
+	
+	/**
+	 * @return the depth of the deepest node of the tree.
+	 */
+	public int maxDepth() {
+		return ancestors().maxDepth();
+	}
+	
+	/**
+	 * Returns the ancestor of a node at a given depth, in O(log depth).
+	 * @param index the unique index of a node.
+	 * @param depth the depth of the requested ancestor.
+	 * @return the index of the ancestor of the node at depth (the node
+	 * itself if depth is its own depth), -1 if there is no such ancestor.
+	 */
+	public int ancestorAt(int index, int depth) {
+		int p = this.nodeIndex.get(index);
+		if(p < 0)
+			return -1;
+		int a = ancestors().ancestorAt(p, depth);
+		return a < 0 ? -1 : this.values[a];
 	}
 	
+	/**
+	 * Returns the deepest node that is an ancestor of (or equal to) both
+	 * nodes, in O(log depth).
+	 * @param a the unique index of a node.
+	 * @param b the unique index of a node.
+	 * @return the index of the lowest common ancestor, -1 if either 
+	 * node does not exist.
+	 */
+	public int lowestCommonAncestor(int a, int b) {
+		int pa = this.nodeIndex.get(a);
+		int pb = this.nodeIndex.get(b);
+		if(pa < 0 || pb < 0)
+			return -1;
+		return this.values[ancestors().lowestCommonAncestor(pa, pb)];
+	}
 	
+	/**
+	 * Fills path with the indexes of the nodes on the path from the root
+	 * to a node, so that path[d] is the ancestor at depth d (path[0] is
+	 * the root and path[depth(index)] is the node itself). Takes time 
+	 * proportional to the depth of the node and does not allocate.
+	 * @param index the unique index of a node.
+	 * @param path array with at least depth(index) + 1 positions.
+	 * @return the number of nodes in the path, -1 if the tree has no
+	 * node identified by index.
+	 */
+	public int pathToRoot(int index, int[] path) {
+		int p = this.nodeIndex.get(index);
+		if(p < 0)
+			return -1;
+		AncestorTable a = ancestors();
+		int length = a.depth(p) + 1;
+		for(int d = length - 1; d >= 0; d--) {
+			path[d] = this.values[p];
+			if(d > 0)
+				p = a.ancestorAt(p, d - 1);
+		}
+		return length;
+	}
+	
+	
+	/**
+	 * Returns the GameTree for the tree sent by the game engine. Trees
+	 * are kept in TreeCache.shared(), so when a game is repeated the tree
+	 * built the first time (and its attachments) is reused, through a view
+	 * with its own current node. Callers of awaitPublication are woken
+	 * up.
+	 * @param gtc the game tree as received from the game engine.
+	 * @return the GameTree for gtc, reset to its root.
+	 */
 	public static GameTree fromGameTreeClass(GameTreeClass gtc) {
-		GameTree t = new GameTree(gtc.getPosibilities());
-		t.build(gtc);	
+		GameTree t = TreeCache.shared().get(new GameTreeClassSource(gtc));
+		synchronized(publicationLock) {
+			publications++;
+			publicationLock.notifyAll();
+		}
+		return t;
+	}
+	
+	/**
+	 * @return the number of trees received from the game engine so far
+	 * (see fromGameTreeClass).
+	 */
+	public static long publications() {
+		synchronized(publicationLock) {
+			return publications;
+		}
+	}
+	
+	/**
+	 * Waits until a tree is received from the game engine, so that 
+	 * strategies need not poll for it.
+	 * @param seen the number of trees received already seen by the caller
+	 * (see publications()); trees received since then end the wait at once.
+	 * @param timeout maximum time to wait, in milliseconds.
+	 * @return the number of trees received so far.
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	public static long awaitPublication(long seen, long timeout) throws InterruptedException {
+		long deadline = System.nanoTime() + timeout * 1000000;
+		synchronized(publicationLock) {
+			long left;
+			while(publications == seen && (left = deadline - System.nanoTime()) > 0)
+				TimeUnit.NANOSECONDS.timedWait(publicationLock, left);
+			return publications;
+		}
+	}
+	
+	/**
+	 * Builds the tree described by source. Large trees are built in 
+	 * parallel (see fromSource(TreeSource, boolean)), small ones 
+	 * sequentially.
+	 * @param source the description of the tree.
+	 * @return a new GameTree.
+	 */
+	public static <N> GameTree fromSource(TreeSource<N> source) {
+		boolean parallel = ForkJoinPool.getCommonPoolParallelism() > 1
+				&& estimateSize(source.getPossibilities()) >= PARALLEL_THRESHOLD;
+		return fromSource(source, parallel);
+	}
+	
+	/**
+	 * Builds the tree described by source.
+	 * @param source the description of the tree.
+	 * @param parallel if true the tree is built by fork-join tasks in 
+	 * the common pool, otherwise it is built by the calling thread.
+	 * @return a new GameTree.
+	 */
+	public static <N> GameTree fromSource(TreeSource<N> source, boolean parallel) {
+		GameTree t = new GameTree(source.getPossibilities());
+		if(parallel)
+			t.buildParallel(source, ForkJoinPool.commonPool());
+		else
+			t.build(source);	
+		t.reset();
 		return t;
 	}
 
+	/**
+	 * Returns the table with the labels of this tree. Labels are 
+	 * interned when the tree is built, so that all nodes with the same
+	 * label share a single String, identified by GameNode.getLabelId().
+	 * @return the SymbolTable of this tree.
+	 */
+	public SymbolTable getSymbolTable() {
+		return this.symbols;
+	}
+
+	/**
+	 * Returns an artifact attached to this tree, computing and attaching
+	 * it first if there is none. Artifacts are data derived from the tree,
+	 * which never changes, and hence remain valid for as long as the tree
+	 * is cached (see TreeCache).
+	 * @param key the key of the artifact, typically its class.
+	 * @param factory computes the artifact from this tree when absent.
+	 * @return the artifact attached to this tree under key.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T getAttachment(Object key, Function<? super GameTree, ? extends T> factory) {
+		Object value = this.attachments.get(key);
+		if(value == null) {
+			//Not computeIfAbsent, as factories may attach other artifacts
+			value = factory.apply(this);
+			Object other = this.attachments.putIfAbsent(key, value);
+			if(other != null)
+				value = other;
+		}
+		return (T) value;
+	}
+	
+	/**
+	 * @param key the key of an artifact.
+	 * @return the artifact attached to this tree under key, null if there
+	 * is none.
+	 */
+	public Object getAttachment(Object key) {
+		return this.attachments.get(key);
+	}
+	
+	/**
+	 * Attaches an artifact to this tree, replacing any previous one with
+	 * the same key.
+	 * @param key the key of the artifact.
+	 * @param value the artifact.
+	 */
+	public void putAttachment(Object key, Object value) {
+		this.attachments.put(key, value);
+	}
+
 	/* (non-Javadoc)
 	 * @see gametree.GameTreeInterface#getValidationSet()
 	 */
@@ -147,14 +518,44 @@ public class GameTree implements GameTreeInterface {
 		return this.validationSet;
 	}
 	
-	public class ProcessUnit {
-		Node node;
-		GameNode n;
+	private static class BuildTask<N> extends RecursiveTask<List<GameNode>> {
 		
-		public ProcessUnit(Node node, GameNode n) {
+		private static final long serialVersionUID = 1L;
+		
+		private final TreeSource<N> source;
+		private final N node;
+		private final GameNode n;
+		private final int depth;
+		private final int splitDepth;
+		
+		BuildTask(TreeSource<N> source, N node, GameNode n, int depth, int splitDepth) {
+			this.source = source;
 			this.node = node;
 			this.n = n;
+			this.depth = depth;
+			this.splitDepth = splitDepth;
 		}
+		
+		@Override
+		protected List<GameNode> compute() {
+			List<GameNode> order = new ArrayList<GameNode>();
+			order.add(this.n);
+			if(this.depth >= this.splitDepth)
+				return buildSubtree(this.source, this.node, this.n, order);
+			
+			N[] descendants = expand(this.source, this.node, this.n, order);
+			List<BuildTask<N>> tasks = new ArrayList<BuildTask<N>>(descendants.length);
+			for(int i = 0; i < descendants.length; i++)
+				tasks.add(new BuildTask<N>(this.source, descendants[i], order.get(i + 1), this.depth + 1, this.splitDepth));
+			invokeAll(tasks);
+			
+			List<GameNode> result = new ArrayList<GameNode>();
+			result.add(this.n);
+			for(int i = 0; i < tasks.size(); i++)
+				result.addAll(tasks.get(i).join());
+			return result;
+		}
+		
 	}
 
 }
@@ -0,0 +1,51 @@
+package gametree;
+
+import java.util.List;
+
+import tree.GameTreeClass;
+import tree.Node;
+
+/**
+ * TreeSource over the game tree sent by the game engine.
+ */
+public class GameTreeClassSource implements TreeSource<Node> {
+
+	private final GameTreeClass gtc;
+
+	public GameTreeClassSource(GameTreeClass gtc) {
+		this.gtc = gtc;
+	}
+
+	public Node getRoot() {
+		return this.gtc.getCurrent();
+	}
+
+	public List<List<Integer>> getPossibilities() {
+		return this.gtc.getPosibilities();
+	}
+
+	public String getLabel(Node node) {
+		return node.getLabel();
+	}
+
+	public int getValue(Node node) {
+		return node.getValue();
+	}
+
+	public String getType(Node node) {
+		return node.getType();
+	}
+
+	public Node[] getChildren(Node node) {
+		return node.getChildren();
+	}
+
+	public double[] getChildrenWeight(Node node) {
+		return node.getChildrenWeight();
+	}
+
+	public String[] getOutcome(Node node) {
+		return node.getOutcome();
+	}
+
+}
@@ -0,0 +1,218 @@
+package gametree;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Groups the player nodes of a FlatGameTree into information sets, and
+ * numbers their actions.
+ *
+ * The keys of a strategy are the labels of the edges, so two nodes of the
+ * same player whose children have the same set of labels cannot be told
+ * apart by a strategy: they are in the same information set. Each
+ * information set gets a dense id, and its actions (one per label) get
+ * consecutive ids, its slots, so that solvers can keep per-action data
+ * in primitive arrays indexed by slot. Every edge out of a player node is
+ * mapped to the slot of its label, whatever the order of the children of
+ * that node.
+ */
+public class InformationSetIndex {
+
+	private final int[] nodeSet;		// by position: information set of the node, -1 if not a player node
+	private final int[] edgeSlot;		// by position: slot of the edge from the parent, -1 under other nodes
+	private final int[] setSlots;		// first slot of each information set, then the number of slots
+	private final boolean[] setPlayer1;	// whether each information set belongs to player 1
+	private final int[] slotLabel;		// label id of each slot
+	private final int[] setMembers;		// first member of each information set, then the number of members
+	private final int[] members;		// positions of the nodes of each information set
+
+	private InformationSetIndex(int[] nodeSet, int[] edgeSlot, int[] setSlots, boolean[] setPlayer1,
+			int[] slotLabel, int[] setMembers, int[] members) {
+		this.nodeSet = nodeSet;
+		this.edgeSlot = edgeSlot;
+		this.setSlots = setSlots;
+		this.setPlayer1 = setPlayer1;
+		this.slotLabel = slotLabel;
+		this.setMembers = setMembers;
+		this.members = members;
+	}
+
+	/**
+	 * Builds the information sets of a tree.
+	 * @param tree the tree.
+	 * @return the index of its information sets.
+	 */
+	public static InformationSetIndex of(FlatGameTree tree) {
+		int n = tree.size();
+		int[] nodeSet = new int[n];
+		int[] edgeSlot = new int[n];
+		Arrays.fill(nodeSet, -1);
+		Arrays.fill(edgeSlot, -1);
+		Map<SetKey, Integer> sets = new HashMap<SetKey, Integer>();
+		int[] setSlots = new int[16];
+		boolean[] setPlayer1 = new boolean[16];
+		int[] slotLabel = new int[64];
+		int[] memberCount = new int[16];
+		int slots = 0;
+
+		for(int p = 0; p < n; p++) {
+			boolean player1 = tree.isPlayer1(p);
+			if(!player1 && !tree.isPlayer2(p) || tree.childCount(p) == 0)
+				continue;
+			int first = tree.firstChild(p);
+			int[] labels = new int[tree.childCount(p)];
+			for(int c = 0; c < labels.length; c++)
+				labels[c] = tree.labelId(first + c);
+			Arrays.sort(labels);
+			SetKey key = new SetKey(player1, labels);
+			Integer id = sets.get(key);
+			if(id == null) {
+				id = sets.size();
+				sets.put(key, id);
+				if(id == setSlots.length) {
+					setSlots = Arrays.copyOf(setSlots, id * 2);
+					setPlayer1 = Arrays.copyOf(setPlayer1, id * 2);
+					memberCount = Arrays.copyOf(memberCount, id * 2);
+				}
+				setSlots[id] = slots;
+				setPlayer1[id] = player1;
+				if(slots + labels.length > slotLabel.length)
+					slotLabel = Arrays.copyOf(slotLabel, Math.max(slotLabel.length * 2, slots + labels.length));
+				System.arraycopy(labels, 0, slotLabel, slots, labels.length);
+				slots += labels.length;
+			}
+			int set = id.intValue();
+			nodeSet[p] = set;
+			memberCount[set]++;
+			for(int c = first; c < first + labels.length; c++)
+				edgeSlot[c] = setSlots[set] + Arrays.binarySearch(labels, tree.labelId(c));
+		}
+
+		int count = sets.size();
+		setSlots = Arrays.copyOf(setSlots, count + 1);
+		setSlots[count] = slots;
+		int[] setMembers = new int[count + 1];
+		for(int s = 0; s < count; s++)
+			setMembers[s + 1] = setMembers[s] + memberCount[s];
+		int[] members = new int[setMembers[count]];
+		int[] next = Arrays.copyOf(setMembers, count);
+		for(int p = 0; p < n; p++)
+			if(nodeSet[p] >= 0)
+				members[next[nodeSet[p]]++] = p;
+		return new InformationSetIndex(nodeSet, edgeSlot, setSlots, Arrays.copyOf(setPlayer1, count),
+				Arrays.copyOf(slotLabel, slots), setMembers, members);
+	}
+
+	/**
+	 * @return the number of information sets.
+	 */
+	public int numberOfSets() {
+		return this.setPlayer1.length;
+	}
+
+	/**
+	 * @return the number of actions of all information sets together.
+	 */
+	public int numberOfSlots() {
+		return this.slotLabel.length;
+	}
+
+	/**
+	 * @param position a node.
+	 * @return the information set of the node, -1 if it is not a player node.
+	 */
+	public int setOf(int position) {
+		return this.nodeSet[position];
+	}
+
+	/**
+	 * @param position a node.
+	 * @return the slot of the action that leads from the parent of the node
+	 * to the node, -1 if the parent is not a player node.
+	 */
+	public int slotOf(int position) {
+		return this.edgeSlot[position];
+	}
+
+	/**
+	 * @param set an information set.
+	 * @return the first slot of its actions.
+	 */
+	public int firstSlot(int set) {
+		return this.setSlots[set];
+	}
+
+	/**
+	 * @param set an information set.
+	 * @return the number of its actions.
+	 */
+	public int numberOfActions(int set) {
+		return this.setSlots[set + 1] - this.setSlots[set];
+	}
+
+	/**
+	 * @param set an information set.
+	 * @return true if it belongs to player 1, false if to player 2.
+	 */
+	public boolean isPlayer1(int set) {
+		return this.setPlayer1[set];
+	}
+
+	/**
+	 * @param slot an action.
+	 * @return the label id of the action.
+	 */
+	public int labelId(int slot) {
+		return this.slotLabel[slot];
+	}
+
+	/**
+	 * @param set an information set.
+	 * @return the index, for member(), of its first node.
+	 */
+	public int firstMember(int set) {
+		return this.setMembers[set];
+	}
+
+	/**
+	 * @param set an information set.
+	 * @return the number of its nodes.
+	 */
+	public int numberOfMembers(int set) {
+		return this.setMembers[set + 1] - this.setMembers[set];
+	}
+
+	/**
+	 * @param i an index between firstMember(set) and firstMember(set) + numberOfMembers(set).
+	 * @return the position of that node of the information set.
+	 */
+	public int member(int i) {
+		return this.members[i];
+	}
+
+	private static class SetKey {
+		final boolean player1;
+		final int[] labels;
+		final int hash;
+
+		SetKey(boolean player1, int[] labels) {
+			this.player1 = player1;
+			this.labels = labels;
+			this.hash = 31 * Arrays.hashCode(labels) + (player1 ? 1 : 0);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(!(o instanceof SetKey))
+				return false;
+			SetKey k = (SetKey) o;
+			return this.player1 == k.player1 && Arrays.equals(this.labels, k.labels);
+		}
+	}
+}
@@ -0,0 +1,310 @@
+package gametree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Game tree read directly from a memory-mapped binary snapshot.
+ *
+ * A snapshot holds the node arrays of a FlatGameTree (indexes, parents,
+ * children ranges, kinds, weights, payoffs and label ids), the labels, the
+ * validation set and the node index, each in its own section of the file.
+ * Loading a snapshot maps the file and reads only its header: every query,
+ * including getNodeByIndex, is answered from the mapped buffer, and no
+ * object is created per node other than the GameNode views that are
+ * actually requested.
+ *
+ * Snapshots allow a client restarted in the middle of a tournament to
+ * recover its trees quickly, and let local processes share large trees
+ * (the pages of the file are shared by the operating system).
+ */
+public class MappedGameTree extends FlatGameTree {
+
+	private static final int MAGIC = 0x47545331; //"GTS1"
+	private static final int VERSION = 1;
+
+	/* Offsets of the fields of the header */
+	private static final int SIZE = 8;
+	private static final int LABELS = 12;
+	private static final int VALIDATION_SIZE = 16;
+	private static final int SECTIONS = 20;
+	private static final int HEADER_LENGTH = SECTIONS + 4 * 15;
+
+	/* Sections, in file order; their offsets follow one another in the header */
+	private static final int VALUE = 0;
+	private static final int PARENT = 1;
+	private static final int FIRST_CHILD = 2;
+	private static final int CHILD_COUNT = 3;
+	private static final int LABEL = 4;
+	private static final int OUTCOME = 5;
+	private static final int PAYOFF_P1 = 6;
+	private static final int PAYOFF_P2 = 7;
+	private static final int WEIGHT = 8;
+	private static final int KIND = 9;
+	private static final int VALIDATION = 10;
+	private static final int LABEL_OFFSETS = 11;
+	private static final int LABEL_BYTES = 12;
+	private static final int INDEX = 13;
+	private static final int END = 14;
+
+	private final ByteBuffer buffer;
+	private final int size;
+	private final int labels;
+	private final int[] sections;
+	private final List<Integer> validationSet;
+	private final String[] labelCache;
+
+	/*
+	 * The header must have been checked (see checkHeader).
+	 */
+	private MappedGameTree(ByteBuffer buffer) {
+		super(buffer.getInt(SIZE));
+		this.buffer = buffer;
+		this.size = buffer.getInt(SIZE);
+		this.labels = buffer.getInt(LABELS);
+		this.sections = new int[END + 1];
+		for(int i = 0; i <= END; i++)
+			this.sections[i] = buffer.getInt(SECTIONS + 4 * i);
+		List<Integer> validationSet = new ArrayList<Integer>();
+		for(int i = 0; i < buffer.getInt(VALIDATION_SIZE); i++)
+			validationSet.add(buffer.getInt(this.sections[VALIDATION] + 4 * i));
+		this.validationSet = Collections.unmodifiableList(validationSet);
+		this.labelCache = new String[this.labels];
+	}
+
+	/*
+	 * Checks the header of a snapshot before any of its fields is used:
+	 * the magic number and version, the counts, and that the sections
+	 * follow one another within the buffer and hold the counted entries.
+	 */
+	private static void checkHeader(ByteBuffer buffer) throws IOException {
+		if(buffer.capacity() < HEADER_LENGTH || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+			throw new IOException("Not a game tree snapshot (or unsupported version)");
+		int size = buffer.getInt(SIZE);
+		int labels = buffer.getInt(LABELS);
+		int validation = buffer.getInt(VALIDATION_SIZE);
+		if(size < 1 || labels < 0 || validation < 0)
+			throw new IOException("Corrupt game tree snapshot header");
+		int previous = HEADER_LENGTH;
+		for(int i = 0; i <= END; i++) {
+			int offset = buffer.getInt(SECTIONS + 4 * i);
+			if(offset < previous)
+				throw new IOException("Corrupt game tree snapshot header");
+			previous = offset;
+		}
+		if(previous > buffer.capacity())
+			throw new IOException("Truncated game tree snapshot");
+		if(buffer.getInt(SECTIONS + 4 * PARENT) - buffer.getInt(SECTIONS + 4 * VALUE) < 4L * size
+				|| buffer.getInt(SECTIONS + 4 * LABEL_OFFSETS) - buffer.getInt(SECTIONS + 4 * VALIDATION) < 4L * validation
+				|| buffer.getInt(SECTIONS + 4 * LABEL_BYTES) - buffer.getInt(SECTIONS + 4 * LABEL_OFFSETS) < 4L * (labels + 1))
+			throw new IOException("Corrupt game tree snapshot header");
+	}
+
+	/**
+	 * Maps a snapshot written by save.
+	 * @param file the snapshot.
+	 * @return a tree backed by the mapped file.
+	 * @throws IOException if the file cannot be mapped or is not a snapshot.
+	 */
+	public static MappedGameTree open(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			checkHeader(buffer);
+			return new MappedGameTree(buffer);
+		} finally {
+			channel.close(); //The mapping remains valid
+		}
+	}
+
+	/**
+	 * Writes a snapshot of a game tree.
+	 * @param t the tree.
+	 * @param file the file to write, replaced if it exists.
+	 * @throws IOException if the file cannot be written.
+	 */
+	public static void save(GameTree t, Path file) throws IOException {
+		save(CompactGameTree.fromGameTree(t), file);
+	}
+
+	/**
+	 * Writes a snapshot of a flat game tree.
+	 * @param t the tree.
+	 * @param file the file to write, replaced if it exists.
+	 * @throws IOException if the file cannot be written.
+	 */
+	public static void save(FlatGameTree t, Path file) throws IOException {
+		int n = t.size();
+		int[] values = new int[n];
+		for(int p = 0; p < n; p++)
+			values[p] = t.indexAt(p);
+		NodeIndex index = NodeIndex.of(values, n);
+		byte[][] labelBytes = new byte[t.numberOfLabels()][];
+		int labelLength = 0;
+		for(int id = 0; id < labelBytes.length; id++) {
+			labelBytes[id] = t.labelOf(id).getBytes(StandardCharsets.UTF_8);
+			labelLength += labelBytes[id].length;
+		}
+		List<Integer> validationSet = t.getValidationSet();
+
+		int[] sections = new int[END + 1];
+		int[] lengths = new int[END];
+		for(int s = VALUE; s <= PAYOFF_P2; s++)
+			lengths[s] = 4 * n;
+		lengths[WEIGHT] = 8 * n;
+		lengths[KIND] = n;
+		lengths[VALIDATION] = 4 * validationSet.size();
+		lengths[LABEL_OFFSETS] = 4 * (labelBytes.length + 1);
+		lengths[LABEL_BYTES] = labelLength;
+		lengths[INDEX] = index.serializedSize();
+		long offset = HEADER_LENGTH;
+		for(int s = 0; s < END; s++) {
+			offset = (offset + 7) & ~7L; //Keep every section aligned
+			sections[s] = (int) offset;
+			offset += lengths[s];
+		}
+		if(offset > Integer.MAX_VALUE)
+			throw new IOException("Game tree too large for a snapshot");
+		sections[END] = (int) offset;
+
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, offset);
+			out.order(ByteOrder.LITTLE_ENDIAN);
+			out.putInt(0, MAGIC);
+			out.putInt(4, VERSION);
+			out.putInt(SIZE, n);
+			out.putInt(LABELS, labelBytes.length);
+			out.putInt(VALIDATION_SIZE, validationSet.size());
+			for(int s = 0; s <= END; s++)
+				out.putInt(SECTIONS + 4 * s, sections[s]);
+
+			for(int p = 0; p < n; p++) {
+				out.putInt(sections[VALUE] + 4 * p, t.indexAt(p));
+				out.putInt(sections[PARENT] + 4 * p, t.parent(p));
+				out.putInt(sections[FIRST_CHILD] + 4 * p, t.firstChild(p));
+				out.putInt(sections[CHILD_COUNT] + 4 * p, t.childCount(p));
+				out.putInt(sections[LABEL] + 4 * p, t.labelId(p));
+				out.putInt(sections[OUTCOME] + 4 * p, t.outcomeId(p));
+				out.putInt(sections[PAYOFF_P1] + 4 * p, t.payoffP1(p));
+				out.putInt(sections[PAYOFF_P2] + 4 * p, t.payoffP2(p));
+				out.putDouble(sections[WEIGHT] + 8 * p, t.weight(p));
+				out.put(sections[KIND] + p, t.kindCode(p));
+			}
+			for(int i = 0; i < validationSet.size(); i++)
+				out.putInt(sections[VALIDATION] + 4 * i, validationSet.get(i).intValue());
+			int labelOffset = 0;
+			for(int id = 0; id < labelBytes.length; id++) {
+				out.putInt(sections[LABEL_OFFSETS] + 4 * id, labelOffset);
+				out.position(sections[LABEL_BYTES] + labelOffset);
+				out.put(labelBytes[id]);
+				labelOffset += labelBytes[id].length;
+			}
+			out.putInt(sections[LABEL_OFFSETS] + 4 * labelBytes.length, labelOffset);
+			out.position(sections[INDEX]);
+			index.write(out);
+			out.force();
+		} finally {
+			channel.close();
+		}
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public int positionOf(int index) {
+		return NodeIndex.get(this.buffer, this.sections[INDEX], index);
+	}
+
+	@Override
+	public int indexAt(int position) {
+		return this.buffer.getInt(this.sections[VALUE] + 4 * position);
+	}
+
+	@Override
+	public int parent(int position) {
+		return this.buffer.getInt(this.sections[PARENT] + 4 * position);
+	}
+
+	@Override
+	public int firstChild(int position) {
+		return this.buffer.getInt(this.sections[FIRST_CHILD] + 4 * position);
+	}
+
+	@Override
+	public int childCount(int position) {
+		return this.buffer.getInt(this.sections[CHILD_COUNT] + 4 * position);
+	}
+
+	@Override
+	public byte kindCode(int position) {
+		return this.buffer.get(this.sections[KIND] + position);
+	}
+
+	@Override
+	public double weight(int position) {
+		return this.buffer.getDouble(this.sections[WEIGHT] + 8 * position);
+	}
+
+	@Override
+	public int payoffP1(int position) {
+		return this.buffer.getInt(this.sections[PAYOFF_P1] + 4 * position);
+	}
+
+	@Override
+	public int payoffP2(int position) {
+		return this.buffer.getInt(this.sections[PAYOFF_P2] + 4 * position);
+	}
+
+	@Override
+	public int labelId(int position) {
+		return this.buffer.getInt(this.sections[LABEL] + 4 * position);
+	}
+
+	@Override
+	public int outcomeId(int position) {
+		return this.buffer.getInt(this.sections[OUTCOME] + 4 * position);
+	}
+
+	@Override
+	public String labelOf(int id) {
+		String label = this.labelCache[id];
+		if(label == null) {
+			int start = this.buffer.getInt(this.sections[LABEL_OFFSETS] + 4 * id);
+			int end = this.buffer.getInt(this.sections[LABEL_OFFSETS] + 4 * (id + 1));
+			byte[] bytes = new byte[end - start];
+			for(int i = 0; i < bytes.length; i++)
+				bytes[i] = this.buffer.get(this.sections[LABEL_BYTES] + start + i);
+			label = new String(bytes, StandardCharsets.UTF_8);
+			this.labelCache[id] = label;
+		}
+		return label;
+	}
+
+	@Override
+	public int numberOfLabels() {
+		return this.labels;
+	}
+
+	/* (non-Javadoc)
+	 * @see gametree.GameTreeInterface#getValidationSet()
+	 */
+	public List<Integer> getValidationSet() {
+		return this.validationSet;
+	}
+
+}
@@ -0,0 +1,218 @@
+package gametree;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * TreeSource for local definitions of simultaneous two-player games, given
+ * by the actions of each player and their payoff matrices. The tree has the
+ * shape of the trees sent by the game engine for such games: player 1
+ * moves at the root, and player 2 moves next without knowing that move, so
+ * all the nodes of player 2 share their labels (one information set).
+ * Labels are of the form player:1:action, e.g. 1:1:Cooperate.
+ *
+ * Games can also be read from a text file, with the actions of each
+ * player on a line and then one line per action of player 1 with the
+ * payoffs of both players against each action of player 2:
+ * <pre>
+ * # Prisoner's dilemma
+ * P1: Cooperate Defect
+ * P2: Cooperate Defect
+ * 3,3 0,5
+ * 5,0 1,1
+ * </pre>
+ */
+public class MatrixGameSource implements TreeSource<MatrixGameSource.Node> {
+
+	public static class Node {
+		final String label;
+		final int value;
+		final String type;
+		final Node[] children;
+		final double[] weights;
+		final String[] outcome;
+
+		Node(String label, int value, String type, Node[] children, String[] outcome) {
+			this.label = label;
+			this.value = value;
+			this.type = type;
+			this.children = children;
+			this.weights = new double[children.length];
+			this.outcome = outcome;
+		}
+	}
+
+	private final String name;
+	private final Node root;
+	private final List<List<Integer>> possibilities;
+
+	/**
+	 * @param name the name of the game.
+	 * @param actionsP1 the actions of player 1.
+	 * @param actionsP2 the actions of player 2.
+	 * @param payoffP1 the payoffs of player 1, by action of player 1 and of player 2.
+	 * @param payoffP2 the payoffs of player 2, by action of player 1 and of player 2.
+	 */
+	public MatrixGameSource(String name, String[] actionsP1, String[] actionsP2, int[][] payoffP1, int[][] payoffP2) {
+		if(actionsP1.length == 0 || actionsP2.length == 0)
+			throw new IllegalArgumentException("Both players need at least one action");
+		if(payoffP1.length != actionsP1.length || payoffP2.length != actionsP1.length)
+			throw new IllegalArgumentException("Payoffs do not match the actions of player 1");
+		this.name = name;
+		String[] labelsP1 = new String[actionsP1.length];
+		String[] labelsP2 = new String[actionsP2.length];
+		for(int i = 0; i < actionsP1.length; i++)
+			labelsP1[i] = "1:1:" + actionsP1[i];
+		for(int j = 0; j < actionsP2.length; j++)
+			labelsP2[j] = "2:1:" + actionsP2[j];
+
+		int value = 1;
+		Node[] movesP2 = new Node[actionsP1.length];
+		int terminal = 2 + actionsP1.length;
+		for(int i = 0; i < actionsP1.length; i++) {
+			if(payoffP1[i].length != actionsP2.length || payoffP2[i].length != actionsP2.length)
+				throw new IllegalArgumentException("Payoffs do not match the actions of player 2");
+			Node[] terminals = new Node[actionsP2.length];
+			for(int j = 0; j < actionsP2.length; j++) {
+				String[] payoffs = { Integer.toString(payoffP1[i][j]), Integer.toString(payoffP2[i][j]) };
+				terminals[j] = new Node(actionsP1[i] + "," + actionsP2[j], terminal++, "t", new Node[0], payoffs);
+			}
+			movesP2[i] = new Node(actionsP1[i], ++value, "P2", terminals, labelsP2);
+		}
+		this.root = new Node("root", 1, "P1", movesP2, labelsP1);
+		this.possibilities = new ArrayList<List<Integer>>();
+		this.possibilities.add(Collections.singletonList(actionsP1.length));
+		this.possibilities.add(Collections.singletonList(actionsP2.length));
+	}
+
+	/**
+	 * @return the name of the game.
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	public static MatrixGameSource prisonersDilemma() {
+		return new MatrixGameSource("PrisonersDilemma", new String[] { "Cooperate", "Defect" }, new String[] { "Cooperate", "Defect" },
+				new int[][] { { 3, 0 }, { 5, 1 } }, new int[][] { { 3, 5 }, { 0, 1 } });
+	}
+
+	public static MatrixGameSource matchingPennies() {
+		return new MatrixGameSource("MatchingPennies", new String[] { "Heads", "Tails" }, new String[] { "Heads", "Tails" },
+				new int[][] { { 1, -1 }, { -1, 1 } }, new int[][] { { -1, 1 }, { 1, -1 } });
+	}
+
+	public static MatrixGameSource battleOfTheSexes() {
+		return new MatrixGameSource("BattleOfTheSexes", new String[] { "Opera", "Football" }, new String[] { "Opera", "Football" },
+				new int[][] { { 3, 0 }, { 0, 2 } }, new int[][] { { 2, 0 }, { 0, 3 } });
+	}
+
+	public static MatrixGameSource rockPaperScissors() {
+		String[] actions = { "Rock", "Paper", "Scissors" };
+		return new MatrixGameSource("RockPaperScissors", actions, actions,
+				new int[][] { { 0, -1, 1 }, { 1, 0, -1 }, { -1, 1, 0 } }, new int[][] { { 0, 1, -1 }, { -1, 0, 1 }, { 1, -1, 0 } });
+	}
+
+	/**
+	 * @param name the name of a predefined game.
+	 * @return the game, null if there is no predefined game with that name.
+	 */
+	public static MatrixGameSource named(String name) {
+		for(MatrixGameSource game : predefined()) {
+			if(game.getName().equalsIgnoreCase(name))
+				return game;
+		}
+		return null;
+	}
+
+	/**
+	 * @return the predefined games.
+	 */
+	public static List<MatrixGameSource> predefined() {
+		return Arrays.asList(prisonersDilemma(), matchingPennies(), battleOfTheSexes(), rockPaperScissors());
+	}
+
+	/**
+	 * Reads a game from a text file (see the format above). Empty lines and
+	 * lines starting with # are ignored.
+	 * @param file the path of the file.
+	 * @return the game, named after the file.
+	 * @throws IOException if the file cannot be read.
+	 * @throws IllegalArgumentException if the file is not a valid game.
+	 */
+	public static MatrixGameSource fromFile(String file) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		BufferedReader in = new BufferedReader(new FileReader(file));
+		try {
+			String line;
+			while((line = in.readLine()) != null) {
+				line = line.trim();
+				if(!line.isEmpty() && !line.startsWith("#"))
+					lines.add(line);
+			}
+		} finally {
+			in.close();
+		}
+		if(lines.size() < 3 || !lines.get(0).startsWith("P1:") || !lines.get(1).startsWith("P2:"))
+			throw new IllegalArgumentException(file + ": expected the lines P1: and P2: followed by the payoffs");
+		String[] actionsP1 = lines.get(0).substring(3).trim().split("\\s+");
+		String[] actionsP2 = lines.get(1).substring(3).trim().split("\\s+");
+		if(lines.size() != 2 + actionsP1.length)
+			throw new IllegalArgumentException(file + ": expected " + actionsP1.length + " lines of payoffs");
+		int[][] payoffP1 = new int[actionsP1.length][actionsP2.length];
+		int[][] payoffP2 = new int[actionsP1.length][actionsP2.length];
+		for(int i = 0; i < actionsP1.length; i++) {
+			String[] cells = lines.get(2 + i).split("\\s+");
+			if(cells.length != actionsP2.length)
+				throw new IllegalArgumentException(file + ": expected " + actionsP2.length + " payoffs in line of " + actionsP1[i]);
+			for(int j = 0; j < cells.length; j++) {
+				String[] pair = cells[j].split(",");
+				try {
+					payoffP1[i][j] = Integer.parseInt(pair[0]);
+					payoffP2[i][j] = Integer.parseInt(pair[1]);
+				} catch (RuntimeException e) {
+					throw new IllegalArgumentException(file + ": invalid payoffs " + cells[j]);
+				}
+			}
+		}
+		return new MatrixGameSource(file, actionsP1, actionsP2, payoffP1, payoffP2);
+	}
+
+	public Node getRoot() {
+		return this.root;
+	}
+
+	public List<List<Integer>> getPossibilities() {
+		return this.possibilities;
+	}
+
+	public String getLabel(Node node) {
+		return node.label;
+	}
+
+	public int getValue(Node node) {
+		return node.value;
+	}
+
+	public String getType(Node node) {
+		return node.type;
+	}
+
+	public Node[] getChildren(Node node) {
+		return node.children;
+	}
+
+	public double[] getChildrenWeight(Node node) {
+		return node.weights;
+	}
+
+	public String[] getOutcome(Node node) {
+		return node.outcome;
+	}
+
+}
@@ -0,0 +1,167 @@
+package gametree;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Maps the unique indexes that the game engine assigns to nodes into
+ * dense positions [0, size) without boxing.
+ *
+ * When the indexes are densely distributed (which is the case for the trees
+ * generated by the engine, numbered sequentially) the map is a plain array
+ * offset by the smallest index. Otherwise it falls back to an open-addressing
+ * hash table with linear probing over two int arrays.
+ */
+public final class NodeIndex {
+
+	/* Use the dense layout while it costs at most this many slots per key */
+	private static final int MAX_DENSE_SLOTS_PER_KEY = 4;
+
+	private final int size;
+	private final int offset;
+	private final int[] dense;
+	private final int[] keys;
+	private final int[] positions;
+	private final int mask;
+
+	private NodeIndex(int size, int offset, int[] dense, int[] keys, int[] positions) {
+		this.size = size;
+		this.offset = offset;
+		this.dense = dense;
+		this.keys = keys;
+		this.positions = positions;
+		this.mask = keys == null ? 0 : keys.length - 1;
+	}
+
+	/**
+	 * Creates an index that maps keys[p] into p, for every p in [0, size).
+	 * If a key appears more than once the last position prevails.
+	 * @param keys the node indexes, by position.
+	 * @param size number of valid entries in keys.
+	 * @return the new index.
+	 */
+	public static NodeIndex of(int[] keys, int size) {
+		if(size == 0)
+			return new NodeIndex(0, 0, new int[0], null, null);
+		int min = keys[0];
+		int max = keys[0];
+		for(int p = 1; p < size; p++) {
+			if(keys[p] < min) min = keys[p];
+			if(keys[p] > max) max = keys[p];
+		}
+		long range = (long) max - min + 1;
+		if(range <= (long) size * MAX_DENSE_SLOTS_PER_KEY) {
+			int[] dense = new int[(int) range];
+			Arrays.fill(dense, -1);
+			for(int p = 0; p < size; p++)
+				dense[keys[p] - min] = p;
+			return new NodeIndex(size, min, dense, null, null);
+		}
+
+		int capacity = Integer.highestOneBit(size) << 2;
+		int[] k = new int[capacity];
+		int[] v = new int[capacity];
+		Arrays.fill(v, -1);
+		int mask = capacity - 1;
+		for(int p = 0; p < size; p++) {
+			int slot = hash(keys[p]) & mask;
+			while(v[slot] != -1 && k[slot] != keys[p])
+				slot = (slot + 1) & mask;
+			k[slot] = keys[p];
+			v[slot] = p;
+		}
+		return new NodeIndex(size, 0, null, k, v);
+	}
+
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Returns the position associated with a node index.
+	 * @param key the unique index of a node.
+	 * @return the position of the node, -1 if the index is unknown.
+	 */
+	public int get(int key) {
+		if(this.dense != null) {
+			long slot = (long) key - this.offset;
+			if(slot < 0 || slot >= this.dense.length)
+				return -1;
+			return this.dense[(int) slot];
+		}
+		int slot = hash(key) & this.mask;
+		while(this.positions[slot] != -1) {
+			if(this.keys[slot] == key)
+				return this.positions[slot];
+			slot = (slot + 1) & this.mask;
+		}
+		return -1;
+	}
+
+	/*
+	 * Serialized form, used by MappedGameTree: the layout (0 for dense, 1
+	 * for hashed), the size, the offset (dense) or mask (hashed), the length
+	 * of the table and then the table (dense) or the keys followed by the
+	 * positions (hashed).
+	 */
+	int serializedSize() {
+		return 16 + 4 * (this.dense != null ? this.dense.length : this.keys.length * 2);
+	}
+
+	void write(ByteBuffer out) {
+		out.putInt(this.dense != null ? 0 : 1);
+		out.putInt(this.size);
+		out.putInt(this.dense != null ? this.offset : this.mask);
+		if(this.dense != null) {
+			out.putInt(this.dense.length);
+			for(int i = 0; i < this.dense.length; i++)
+				out.putInt(this.dense[i]);
+		} else {
+			out.putInt(this.keys.length);
+			for(int i = 0; i < this.keys.length; i++)
+				out.putInt(this.keys[i]);
+			for(int i = 0; i < this.positions.length; i++)
+				out.putInt(this.positions[i]);
+		}
+	}
+
+	/*
+	 * Same as get(key), over an index serialized at the absolute offset at 
+	 * of buffer. Does not change the position of buffer.
+	 */
+	static int get(ByteBuffer in, int at, int key) {
+		int length = in.getInt(at + 12);
+		int table = at + 16;
+		if(in.getInt(at) == 0) {
+			long slot = (long) key - in.getInt(at + 8);
+			if(slot < 0 || slot >= length)
+				return -1;
+			return in.getInt(table + 4 * (int) slot);
+		}
+		int mask = in.getInt(at + 8);
+		int positions = table + 4 * length;
+		int slot = hash(key) & mask;
+		int p;
+		while((p = in.getInt(positions + 4 * slot)) != -1) {
+			if(in.getInt(table + 4 * slot) == key)
+				return p;
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the number of positions covered by this index.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * @return true if the index is backed by a direct-addressed array.
+	 */
+	public boolean isDense() {
+		return this.dense != null;
+	}
+}
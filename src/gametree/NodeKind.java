@@ -0,0 +1,50 @@
+package gametree;
+
+/**
+ * The kinds of node of a game tree. The type String sent by the game engine
+ * is parsed into one of these once, when the tree is built, so that the
+ * node predicates and traversal code (which may switch on the kind) never
+ * compare Strings.
+ */
+public enum NodeKind {
+
+	PLAYER1,
+	PLAYER2,
+	NATURE,
+	TERMINAL,
+	UNKNOWN;
+
+	private static final NodeKind[] CODES = values();
+
+	/**
+	 * Parses the node type used by the game engine ("P1", "P2", "c" or
+	 * "t", regardless of case).
+	 * @param type the type of the node.
+	 * @return the corresponding kind, UNKNOWN if type is not recognised.
+	 */
+	public static NodeKind parse(String type) {
+		if(type == null)
+			return UNKNOWN;
+		if(type.equalsIgnoreCase("P1")) return PLAYER1;
+		if(type.equalsIgnoreCase("P2")) return PLAYER2;
+		if(type.equalsIgnoreCase("c")) return NATURE;
+		if(type.equalsIgnoreCase("t")) return TERMINAL;
+		return UNKNOWN;
+	}
+
+	/**
+	 * @return a byte that identifies this kind, suitable to be stored
+	 * in primitive arrays.
+	 */
+	public byte code() {
+		return (byte) ordinal();
+	}
+
+	/**
+	 * @param code a code returned by code().
+	 * @return the kind identified by code.
+	 */
+	public static NodeKind fromCode(byte code) {
+		return CODES[code];
+	}
+}
@@ -0,0 +1,113 @@
+package gametree;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Tree-wide table of the labels used in a game tree. Every distinct label
+ * (edge labels, which are also the keys of the information sets exposed by
+ * PlayStrategy.keyIterator()) is stored once and identified by a dense int
+ * id, assigned in order of first appearance.
+ *
+ * The short name of each label (the part after the last ':', which is the
+ * name of the action) is computed once, when the label is interned.
+ */
+public class SymbolTable {
+
+	private final Map<String, Integer> ids;
+	private String[] symbols;
+	private String[] shortNames;
+	private int size;
+
+	public SymbolTable() {
+		this.ids = new HashMap<String, Integer>();
+		this.symbols = new String[16];
+		this.shortNames = new String[16];
+		this.size = 0;
+	}
+
+	/**
+	 * Adds label to the table if it is not there yet.
+	 * @param label the label to intern.
+	 * @return the id of label.
+	 */
+	public int intern(String label) {
+		Integer id = this.ids.get(label);
+		if(id != null)
+			return id.intValue();
+		if(this.size == this.symbols.length) {
+			this.symbols = Arrays.copyOf(this.symbols, this.size * 2);
+			this.shortNames = Arrays.copyOf(this.shortNames, this.size * 2);
+		}
+		this.symbols[this.size] = label;
+		this.shortNames[this.size] = label.substring(label.lastIndexOf(':')+1);
+		this.ids.put(label, this.size);
+		return this.size++;
+	}
+
+	/**
+	 * @param label a label.
+	 * @return the id of label, -1 if the label is not in the table.
+	 */
+	public int idOf(String label) {
+		Integer id = this.ids.get(label);
+		return id == null ? -1 : id.intValue();
+	}
+
+	/**
+	 * @param id the id of a label.
+	 * @return the (canonical instance of the) label with that id.
+	 */
+	public String symbol(int id) {
+		return this.symbols[id];
+	}
+
+	/**
+	 * @param id the id of a label.
+	 * @return the name of the action denoted by the label, i.e. the
+	 * part of the label that follows the last ':'.
+	 */
+	public String shortName(int id) {
+		return this.shortNames[id];
+	}
+
+	/**
+	 * @param label a label.
+	 * @return the name of the action denoted by the label. Labels that
+	 * are not in the table are shortened on the fly.
+	 */
+	public String shortName(String label) {
+		Integer id = this.ids.get(label);
+		if(id == null)
+			return label.substring(label.lastIndexOf(':')+1);
+		return this.shortNames[id.intValue()];
+	}
+
+	/**
+	 * Maps a sequence of labels, typically the keys returned by
+	 * PlayStrategy.keyIterator(), into their ids.
+	 * @param labels the labels to map.
+	 * @return the ids of the labels, in iteration order. Labels that are
+	 * not in the table are mapped into -1.
+	 */
+	public int[] idsOf(Iterator<String> labels) {
+		int[] result = new int[16];
+		int n = 0;
+		while(labels.hasNext()) {
+			if(n == result.length)
+				result = Arrays.copyOf(result, n * 2);
+			result[n++] = idOf(labels.next());
+		}
+		return Arrays.copyOf(result, n);
+	}
+
+	/**
+	 * @return the number of labels in the table. Valid ids are in
+	 * [0, size()).
+	 */
+	public int size() {
+		return this.size;
+	}
+}
@@ -0,0 +1,199 @@
+package gametree;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of built game trees, keyed by a structural hash of
+ * their description (node types, indexes, labels, weights and payoffs, plus
+ * the possible moves at each depth).
+ *
+ * In a tournament the same game is played many times; when its description
+ * arrives again the tree built the first time is returned, together with
+ * every artifact that strategies attached to it (see GameTree.getAttachment),
+ * such as normal-form matrices or equilibria. Only that data is shared:
+ * every caller gets its own view of the tree (see GameTree.view), so that
+ * moving the current node of one does not move it under the others.
+ *
+ * The hash has 128 bits (two independent 64-bit hashes) plus the number of
+ * nodes, so that a false hit is not a practical concern.
+ */
+public class TreeCache {
+
+	public static final int DEFAULT_CAPACITY = 8;
+
+	private static final TreeCache SHARED = new TreeCache(DEFAULT_CAPACITY);
+
+	private final Map<Key, GameTree> trees;
+	private long hits;
+	private long misses;
+
+	/**
+	 * @param capacity the maximum number of trees kept by the cache.
+	 */
+	public TreeCache(final int capacity) {
+		this.trees = new LinkedHashMap<Key, GameTree>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, GameTree> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * @return the cache used by GameTree.fromGameTreeClass.
+	 */
+	public static TreeCache shared() {
+		return SHARED;
+	}
+
+	/**
+	 * Returns the tree described by source, building it only if no tree
+	 * with the same structure is in the cache.
+	 * @param source the description of the tree.
+	 * @return a new view, at the root, of the cached GameTree for source.
+	 */
+	public <N> GameTree get(TreeSource<N> source) {
+		Key key = Key.of(source);
+		GameTree t;
+		synchronized(this) {
+			t = this.trees.get(key);
+			if(t != null) {
+				this.hits++;
+				return t.view();
+			}
+			this.misses++;
+		}
+		t = GameTree.fromSource(source);
+		synchronized(this) {
+			GameTree other = this.trees.get(key);
+			if(other != null) //Built concurrently by someone else
+				return other.view();
+			this.trees.put(key, t);
+		}
+		return t.view();
+	}
+
+	/**
+	 * Removes every tree from the cache.
+	 */
+	public synchronized void clear() {
+		this.trees.clear();
+	}
+
+	/**
+	 * @return the number of trees in the cache.
+	 */
+	public synchronized int size() {
+		return this.trees.size();
+	}
+
+	/**
+	 * @return the number of requests answered with a cached tree.
+	 */
+	public synchronized long getHits() {
+		return this.hits;
+	}
+
+	/**
+	 * @return the number of requests that required building a tree.
+	 */
+	public synchronized long getMisses() {
+		return this.misses;
+	}
+
+	/**
+	 * Computes the structural hash of the tree described by source.
+	 * @param source the description of a tree.
+	 * @return two independent 64-bit hashes of the structure of the tree.
+	 */
+	public static <N> long[] structuralHash(TreeSource<N> source) {
+		Key k = Key.of(source);
+		return new long[] { k.h1, k.h2 };
+	}
+
+	/**
+	 * Structural hash of a tree. Nodes are visited depth first, with an
+	 * explicit stack, and every attribute is fed to both hashes.
+	 */
+	static final class Key {
+
+		private static final long P1 = 0x9E3779B97F4A7C15L;
+		private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+
+		private long h1 = 0x243F6A8885A308D3L;
+		private long h2 = 0x13198A2E03707344L;
+		private int size = 0;
+
+		static <N> Key of(TreeSource<N> source) {
+			Key k = new Key();
+			List<List<Integer>> possibilities = source.getPossibilities();
+			for(int i = 0; i < possibilities.size(); i++) {
+				k.add(-1);
+				for(int j = 0; j < possibilities.get(i).size(); j++)
+					k.add(possibilities.get(i).get(j).intValue());
+			}
+
+			List<N> pending = new ArrayList<N>();
+			pending.add(source.getRoot());
+			k.add(source.getLabel(source.getRoot()));
+			while(!pending.isEmpty()) {
+				N node = pending.remove(pending.size() - 1);
+				N[] descendants = source.getChildren(node);
+				double[] weights = source.getChildrenWeight(node);
+				String[] outcome = source.getOutcome(node);
+				k.size++;
+				k.add(source.getType(node));
+				k.add(source.getValue(node));
+				k.add(descendants.length);
+				for(int i = 0; i < outcome.length; i++)
+					k.add(outcome[i]);
+				for(int i = 0; i < descendants.length; i++) {
+					k.add(Double.doubleToLongBits(weights[i]));
+					k.add(source.getLabel(descendants[i])); //The outcome of the GameNode of the child
+					pending.add(descendants[i]);
+				}
+			}
+			return k;
+		}
+
+		private void add(long v) {
+			this.h1 = mix(this.h1 ^ v) * P1;
+			this.h2 = Long.rotateLeft(this.h2 + v * P2, 31) * P1;
+		}
+
+		private void add(String s) {
+			long a = 0;
+			long b = 1;
+			for(int i = 0; i < s.length(); i++) {
+				a = a * 31 + s.charAt(i);
+				b = b * 0x100000001B3L ^ s.charAt(i);
+			}
+			this.h1 = mix(this.h1 ^ a ^ s.length()) * P1;
+			this.h2 = Long.rotateLeft(this.h2 + b * P2, 31) * P1;
+		}
+
+		private static long mix(long z) {
+			z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+			z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+			return z ^ (z >>> 31);
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (this.h1 ^ (this.h1 >>> 32));
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(!(o instanceof Key))
+				return false;
+			Key k = (Key) o;
+			return this.h1 == k.h1 && this.h2 == k.h2 && this.size == k.size;
+		}
+	}
+}
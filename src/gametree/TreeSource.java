@@ -0,0 +1,65 @@
+package gametree;
+
+import java.util.List;
+
+/**
+ * Describes a game tree to be built, in the same terms used by the classes
+ * of the game engine (tree.GameTreeClass and tree.Node). This allows trees
+ * to be built either from what the engine sends or from local definitions
+ * of games.
+ *
+ * @param <N> the type of the nodes of the source.
+ */
+public interface TreeSource<N> {
+
+	/**
+	 * @return the root node of the tree.
+	 */
+	N getRoot();
+
+	/**
+	 * Returns, for each depth of the game, the number of moves available
+	 * in each of its information sets (see GameTreeInterface.getValidationSet()).
+	 * @return the possible moves, by depth.
+	 */
+	List<List<Integer>> getPossibilities();
+
+	/**
+	 * @param node a node of the source.
+	 * @return the name of node.
+	 */
+	String getLabel(N node);
+
+	/**
+	 * @param node a node of the source.
+	 * @return the unique index of node.
+	 */
+	int getValue(N node);
+
+	/**
+	 * @param node a node of the source.
+	 * @return the type of node ("P1", "P2", "c" or "t").
+	 */
+	String getType(N node);
+
+	/**
+	 * @param node a node of the source.
+	 * @return the direct descendants of node, empty if node is terminal.
+	 */
+	N[] getChildren(N node);
+
+	/**
+	 * @param node a node of the source.
+	 * @return the probability of reaching each descendant of node, when
+	 * node is a nature node.
+	 */
+	double[] getChildrenWeight(N node);
+
+	/**
+	 * @param node a node of the source.
+	 * @return the labels of the edges to each descendant of node or, if
+	 * node is terminal, the payoffs of player 1 and player 2.
+	 */
+	String[] getOutcome(N node);
+
+}
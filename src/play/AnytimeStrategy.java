@@ -0,0 +1,361 @@
+package play;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import gametree.GameTree;
+import play.exception.InvalidStrategyException;
+
+/**
+ * Base class of the strategies whose computation may not end in time.
+ *
+ * AnytimeStrategy implements the loop of execute (receive a request, fill
+ * it, deliver it). The computation of each round, compute, runs on a worker
+ * thread and publishes the best strategy it has found so far in an
+ * Incumbent, as often as it likes. The request is delivered with the last
+ * strategy published as soon as compute returns, or at the latest a safety
+ * margin before the round expires (timeToExpire), in which case the worker
+ * is interrupted and the round is counted as a deadline hit. If nothing was
+ * published, every information set is played uniformly.
+ *
+ * There is a single worker thread, and compute is given a read-only copy
+ * of the request, so a late computation never runs alongside the next
+ * one nor reads a request that is being filled. A computation that does
+ * not stop when interrupted delays the next round: its computation starts
+ * only when the late one ends, and if that does not happen within the
+ * budget of the round, the round is played uniformly.
+ */
+public abstract class AnytimeStrategy extends Strategy implements LocalPlayer {
+
+	/** Default time, in milliseconds, kept to transmit the strategy to the server */
+	public static final long DEFAULT_SAFETY_MARGIN = 500;
+
+	private volatile long safetyMargin = DEFAULT_SAFETY_MARGIN;
+	private ExecutorService worker = null;
+	private CountDownLatch running = null;	// counted down when the last computation submitted ends
+	private int rounds = 0;
+	private int deadlineHits = 0;
+	private long computeTime = 0;		// nanoseconds spent in the rounds, until the strategy is filled
+
+	/**
+	 * Computes the strategy of one round. Implementations publish their
+	 * strategy, or successive better ones, in incumbent. They should stop
+	 * when interrupted (or when incumbent.timeLeft() reaches 0): the request
+	 * is delivered anyway and the result of a late computation is ignored.
+	 * @param request a read-only copy of the request of the round (the
+	 * keys, the outcome of the previous round, ...).
+	 * @param incumbent where to publish the strategy.
+	 * @throws InterruptedException if the worker is interrupted.
+	 */
+	protected abstract void compute(PlayStrategyInterface request, Incumbent incumbent) throws InterruptedException;
+
+	/**
+	 * @param margin time, in milliseconds, kept to deliver the strategy
+	 * before the round expires.
+	 */
+	public void setSafetyMargin(long margin) {
+		this.safetyMargin = margin;
+	}
+
+	public long getSafetyMargin() {
+		return this.safetyMargin;
+	}
+
+	/**
+	 * @return the number of rounds played.
+	 */
+	public synchronized int getRounds() {
+		return this.rounds;
+	}
+
+	/**
+	 * @return the number of rounds in which the computation was still
+	 * running when the strategy had to be delivered.
+	 */
+	public synchronized int getDeadlineHits() {
+		return this.deadlineHits;
+	}
+
+	/**
+	 * @return the average time, in milliseconds, between the reception of
+	 * a request and the moment its strategy is ready to be delivered.
+	 */
+	public synchronized double getAverageResponseTime() {
+		return this.rounds == 0 ? 0 : this.computeTime / 1e6 / this.rounds;
+	}
+
+	/**
+	 * The best strategy found so far in a round.
+	 */
+	public static class Incumbent {
+		private final AtomicReference<Map<String, Double>> best = new AtomicReference<Map<String, Double>>();
+		private final long deadline; // System.nanoTime() at which the strategy is delivered
+
+		Incumbent(long deadline) {
+			this.deadline = deadline;
+		}
+
+		/**
+		 * Publishes a strategy, which replaces the previous one.
+		 * @param strategy probability of each key (copied).
+		 */
+		public void publish(Map<String, Double> strategy) {
+			this.best.set(Collections.unmodifiableMap(new LinkedHashMap<String, Double>(strategy)));
+		}
+
+		/**
+		 * Publishes a strategy held by label id (see StrategyKeys).
+		 * @param keys the keys of the request.
+		 * @param profile probabilities indexed by label id (copied).
+		 */
+		public void publish(StrategyKeys keys, double[] profile) {
+			Map<String, Double> strategy = new LinkedHashMap<String, Double>();
+			for(int i = 0; i < keys.size(); i++)
+				strategy.put(keys.key(i), profile[keys.id(i)]);
+			this.best.set(Collections.unmodifiableMap(strategy));
+		}
+
+		/**
+		 * @return the last strategy published, null if none.
+		 */
+		public Map<String, Double> get() {
+			return this.best.get();
+		}
+
+		/**
+		 * @return the time left, in milliseconds, until the strategy is delivered.
+		 */
+		public long timeLeft() {
+			return Math.max(0, (this.deadline - System.nanoTime()) / 1000000);
+		}
+	}
+
+	@Override
+	public void execute() throws InterruptedException {
+		while(!TreeAvailability.await(this, 1000))
+			System.err.println("Waiting for game tree to become available.");
+		try {
+			while(true) {
+				PlayStrategy myStrategy = this.getStrategyRequest();
+				if(myStrategy == null) //Game was terminated by an outside event
+					break;
+				fillStrategy(myStrategy);
+				try {
+					this.provideStrategy(myStrategy);
+				} catch (InvalidStrategyException e) {
+					System.err.println("Invalid strategy: " + e.getMessage() + ", playing uniformly.");
+					uniform(myStrategy);
+					try {
+						this.provideStrategy(myStrategy);
+					} catch (InvalidStrategyException again) {
+						System.err.println("PANIC: Strategy structure does not match the game.");
+						this.quitGame(myStrategy);
+					}
+				}
+			}
+		} finally {
+			endGame();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see play.LocalPlayer#endGame()
+	 */
+	public void endGame() {
+		if(this.worker != null) {
+			this.worker.shutdownNow();
+			this.worker = null;
+			this.running = null;
+			System.out.println(getClass().getSimpleName() + ": deadline hit in " + getDeadlineHits() + " of " + getRounds()
+					+ " rounds, average response time " + String.format("%.1f", getAverageResponseTime()) + " ms");
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see play.LocalPlayer#fillStrategy(play.PlayStrategyInterface)
+	 */
+	public boolean fillStrategy(final PlayStrategyInterface myStrategy) throws InterruptedException {
+		if(this.worker == null) {
+			this.worker = Executors.newSingleThreadExecutor(r -> {
+				Thread t = new Thread(r, getClass().getSimpleName() + "-worker");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		long start = System.nanoTime();
+		long budget = Math.max(0, myStrategy.timeToExpire() - this.safetyMargin);
+		long deadline = start + budget * 1000000;
+		final Incumbent incumbent = new Incumbent(deadline);
+		boolean late = false;
+		//A late computation that ignored its interruption must end before the next one starts
+		if(this.running != null && !this.running.await(budget, TimeUnit.MILLISECONDS)) {
+			System.err.println("The computation of a previous round is still running.");
+			late = true;
+		}
+		else {
+			final PlayStrategyInterface request = new RequestSnapshot(myStrategy, this.tree, deadline + this.safetyMargin * 1000000);
+			final CountDownLatch finished = new CountDownLatch(1);
+			this.running = finished;
+			Future<?> computation = this.worker.submit(() -> {
+				try {
+					compute(request, incumbent);
+				} finally {
+					finished.countDown();
+				}
+				return null;
+			});
+			try {
+				computation.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+			} catch (TimeoutException e) {
+				late = true;
+				computation.cancel(true);
+			} catch (ExecutionException e) {
+				System.err.println("Strategy computation failed: " + e.getCause());
+				e.getCause().printStackTrace(System.err);
+			}
+		}
+
+		Map<String, Double> best = incumbent.get();
+		if(best == null) {
+			System.err.println("No strategy computed in time, playing uniformly.");
+			uniform(myStrategy);
+		}
+		else {
+			for(Map.Entry<String, Double> e : best.entrySet())
+				myStrategy.put(e.getKey(), e.getValue());
+		}
+		synchronized(this) {
+			this.rounds++;
+			if(late)
+				this.deadlineHits++;
+			this.computeTime += System.nanoTime() - start;
+		}
+		return true;
+	}
+
+	/*
+	 * Read-only copy of a request, given to compute. The keys and the
+	 * outcome of the previous round are copied when the copy is made.
+	 */
+	private static class RequestSnapshot implements PlayStrategyInterface {
+		private final List<String> keys;
+		private final long expiry;		// System.nanoTime() at which the round expires
+		private final double probabilityForNextIteration;
+		private final int maximumIterations;
+		private final boolean firstRound;
+		private final int finalP1;
+		private final int finalP2;
+		private final int[] lastScores;	// self as P1, self as P2, opponent as P1, opponent as P2
+
+		RequestSnapshot(PlayStrategyInterface request, GameTree tree, long expiry) {
+			List<String> keys = new ArrayList<String>();
+			for(Iterator<String> k = request.keyIterator(); k.hasNext(); )
+				keys.add(k.next());
+			this.keys = Collections.unmodifiableList(keys);
+			this.expiry = expiry;
+			this.probabilityForNextIteration = request.probabilityForNextIteration();
+			this.maximumIterations = request.getMaximumNumberOfIterations();
+			this.firstRound = request.isFirstRound();
+			this.finalP1 = request.getFinalP1Node();
+			this.finalP2 = request.getFinalP2Node();
+			this.lastScores = new int[4];
+			if(this.finalP1 != -1 && this.finalP2 != -1) { //Not specified in the first round
+				this.lastScores[0] = request.getLastRoundSelfScoreAsP1(tree);
+				this.lastScores[1] = request.getLastRoundSelfScoreAsP2(tree);
+				this.lastScores[2] = request.getLastRoundOpponentScoreAsP1(tree);
+				this.lastScores[3] = request.getLastRoundOpponentScoreAsP2(tree);
+			}
+		}
+
+		public long timeToExpire() {
+			return Math.max(0, (this.expiry - System.nanoTime()) / 1000000);
+		}
+
+		public double probabilityForNextIteration() {
+			return this.probabilityForNextIteration;
+		}
+
+		public int getMaximumNumberOfIterations() {
+			return this.maximumIterations;
+		}
+
+		public boolean isFirstRound() {
+			return this.firstRound;
+		}
+
+		public void quitGame() {
+			throw new UnsupportedOperationException("The request of compute is read-only");
+		}
+
+		public Double put(String key, Double value) {
+			throw new UnsupportedOperationException("The request of compute is read-only, publish in the incumbent");
+		}
+
+		public Iterator<String> keyIterator() {
+			return this.keys.iterator();
+		}
+
+		public int getFinalP1Node() {
+			return this.finalP1;
+		}
+
+		public int getFinalP2Node() {
+			return this.finalP2;
+		}
+
+		public int getLastRoundSelfScoreAsP1(GameTree t) {
+			return this.lastScores[0];
+		}
+
+		public int getLastRoundSelfScoreAsP2(GameTree t) {
+			return this.lastScores[1];
+		}
+
+		public int getLastRoundOpponentScoreAsP1(GameTree t) {
+			return this.lastScores[2];
+		}
+
+		public int getLastRoundOpponentScoreAsP2(GameTree t) {
+			return this.lastScores[3];
+		}
+	}
+
+	/*
+	 * Plays every information set uniformly.
+	 */
+	private void uniform(PlayStrategyInterface myStrategy) {
+		for(Map.Entry<String, Double> e : uniformStrategy(this.tree, myStrategy).entrySet())
+			myStrategy.put(e.getKey(), e.getValue());
+	}
+
+	/**
+	 * Computes the strategy that plays every information set uniformly;
+	 * the keys come in groups whose sizes are given by the validation set.
+	 * @param tree the tree of the game.
+	 * @param request a request of the game.
+	 * @return the probability of each key of the request.
+	 */
+	protected static Map<String, Double> uniformStrategy(GameTree tree, PlayStrategyInterface request) {
+		Map<String, Double> strategy = new LinkedHashMap<String, Double>();
+		Iterator<Integer> moves = tree.getValidationSet().iterator();
+		Iterator<String> keys = request.keyIterator();
+		while(moves.hasNext()) {
+			int n = moves.next();
+			for(int i = 0; i < n && keys.hasNext(); i++)
+				strategy.put(keys.next(), 1.0 / n);
+		}
+		return strategy;
+	}
+}
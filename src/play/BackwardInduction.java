@@ -0,0 +1,218 @@
+package play;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import gametree.CompactGameTree;
+import gametree.FlatGameTree;
+import gametree.GameTree;
+
+/**
+ * Subgame perfect play of a perfect information game by backward induction.
+ *
+ * A single bottom-up pass computes the expected payoffs of both players in
+ * every subtree: a player node takes the values of its best child for that
+ * player (the first one in case of ties), a nature node the average of the
+ * values of its children weighted by their probabilities, and a terminal
+ * node its payoffs. The values and choices are kept in primitive arrays
+ * indexed by the position of the nodes in a FlatGameTree.
+ *
+ * As children come after their parent in a FlatGameTree, visiting the
+ * positions in decreasing order is a post-order pass without recursion.
+ * In breadth-first trees (CompactGameTree) the nodes of a level occupy a
+ * contiguous range and are independent of each other, so wide levels are
+ * split across a fork-join pool, one level after the other.
+ */
+public class BackwardInduction {
+
+	/* Levels with fewer nodes are processed by the calling thread */
+	static final int PARALLEL_THRESHOLD = 1 << 14;
+	private static final int NODES_PER_TASK = 1 << 12;
+
+	private final FlatGameTree tree;
+	private final double[] valueP1;	// expected payoff of player 1 in the subtree of each node
+	private final double[] valueP2;	// expected payoff of player 2 in the subtree of each node
+	private final int[] choice;		// child chosen at each player node, -1 at other nodes
+	private final ForkJoinPool pool;
+
+	public BackwardInduction(FlatGameTree tree) {
+		this(tree, ForkJoinPool.commonPool());
+	}
+
+	public BackwardInduction(FlatGameTree tree, ForkJoinPool pool) {
+		this.tree = tree;
+		this.valueP1 = new double[tree.size()];
+		this.valueP2 = new double[tree.size()];
+		this.choice = new int[tree.size()];
+		this.pool = pool;
+	}
+
+	/**
+	 * Returns the subgame perfect play of a game tree, computed once over
+	 * its CompactGameTree and memoized on the tree (see GameTree.getAttachment).
+	 * @param tree the game tree.
+	 * @return the solved BackwardInduction, shared and not to be modified.
+	 */
+	public static BackwardInduction fromTree(GameTree tree) {
+		return tree.getAttachment(BackwardInduction.class, t -> {
+			BackwardInduction solver = new BackwardInduction(CompactGameTree.of(t));
+			solver.solve();
+			return solver;
+		});
+	}
+
+	/**
+	 * Computes the values and choices of every node.
+	 */
+	public void solve() {
+		int n = this.tree.size();
+		int[] levels = this.tree.levels();
+		if(levels == null || this.pool.getParallelism() < 2) {
+			solve(0, n);
+			return;
+		}
+		for(int l = levels.length - 2; l >= 0; l--) {
+			int from = levels[l];
+			int to = levels[l + 1];
+			if(to - from < PARALLEL_THRESHOLD)
+				solve(from, to);
+			else
+				this.pool.invoke(new LevelTask(from, to));
+		}
+	}
+
+	/*
+	 * Processes the positions in [from, to) in decreasing order; the
+	 * children of all of them must be solved already or be in the range.
+	 */
+	private void solve(int from, int to) {
+		FlatGameTree t = this.tree;
+		for(int p = to - 1; p >= from; p--) {
+			int first = t.firstChild(p);
+			int last = first + t.childCount(p);
+			this.choice[p] = -1;
+			if(t.isTerminal(p) || first == last) {
+				this.valueP1[p] = t.payoffP1(p);
+				this.valueP2[p] = t.payoffP2(p);
+			}
+			else if(t.isNature(p)) {
+				double v1 = 0;
+				double v2 = 0;
+				for(int c = first; c < last; c++) {
+					double w = t.weight(c);
+					v1 += w * this.valueP1[c];
+					v2 += w * this.valueP2[c];
+				}
+				this.valueP1[p] = v1;
+				this.valueP2[p] = v2;
+			}
+			else {
+				double[] own = t.isPlayer1(p) ? this.valueP1 : this.valueP2;
+				int best = first;
+				for(int c = first + 1; c < last; c++)
+					if(own[c] > own[best])
+						best = c;
+				this.choice[p] = best;
+				this.valueP1[p] = this.valueP1[best];
+				this.valueP2[p] = this.valueP2[best];
+			}
+		}
+	}
+
+	private class LevelTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+
+		LevelTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(this.to - this.from <= NODES_PER_TASK) {
+				solve(this.from, this.to);
+				return;
+			}
+			int middle = (this.from + this.to) >>> 1;
+			invokeAll(new LevelTask(this.from, middle), new LevelTask(middle, this.to));
+		}
+	}
+
+	/**
+	 * @param position a node of the tree.
+	 * @return the expected payoff of player 1 in the subtree of the node.
+	 */
+	public double getValueP1(int position) {
+		return this.valueP1[position];
+	}
+
+	/**
+	 * @param position a node of the tree.
+	 * @return the expected payoff of player 2 in the subtree of the node.
+	 */
+	public double getValueP2(int position) {
+		return this.valueP2[position];
+	}
+
+	/**
+	 * @param position a node of the tree.
+	 * @return the position of the child chosen at the node, -1 if the node
+	 * is not a player node.
+	 */
+	public int getChoice(int position) {
+		return this.choice[position];
+	}
+
+	/**
+	 * Checks that no label leads out of two different player nodes, i.e.
+	 * that every information set is a single node. Otherwise the choices of
+	 * the nodes that share labels may conflict when written into a strategy.
+	 * @return true if the tree is a perfect information game.
+	 */
+	public boolean isPerfectInformation() {
+		int[] owner = new int[this.tree.numberOfLabels()];
+		Arrays.fill(owner, -1);
+		for(int p = 0; p < this.tree.size(); p++) {
+			if(this.choice[p] < 0)
+				continue;
+			int first = this.tree.firstChild(p);
+			for(int c = first; c < first + this.tree.childCount(p); c++) {
+				int id = this.tree.labelId(c);
+				if(owner[id] >= 0 && owner[id] != p)
+					return false;
+				owner[id] = p;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the pure strategy given by the choices into a strategy request:
+	 * the label of the chosen child of every player node gets probability 1,
+	 * the labels of the other children 0.
+	 * @param keys the keys of the strategy request.
+	 * @param myStrategy the strategy request.
+	 */
+	public void write(StrategyKeys keys, PlayStrategyInterface myStrategy) {
+		int[] ids = new int[this.tree.numberOfLabels()];
+		for(int id = 0; id < ids.length; id++)
+			ids[id] = keys.getSymbolTable().idOf(this.tree.labelOf(id));
+		double[] profile = keys.newProfile();
+		for(int p = 0; p < this.tree.size(); p++) {
+			int chosen = this.choice[p];
+			if(chosen < 0)
+				continue;
+			int first = this.tree.firstChild(p);
+			for(int c = first; c < first + this.tree.childCount(p); c++) {
+				int id = ids[this.tree.labelId(c)];
+				if(id >= 0 && id < profile.length)
+					profile[id] = c == chosen ? 1 : 0;
+			}
+		}
+		keys.write(profile, myStrategy);
+	}
+}
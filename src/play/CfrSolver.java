@@ -0,0 +1,383 @@
+package play;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import gametree.CompactGameTree;
+import gametree.FlatGameTree;
+import gametree.GameTree;
+import gametree.InformationSetIndex;
+
+/**
+ * Counterfactual regret minimization over the whole tree, for games with
+ * imperfect information (and nature nodes), where backward induction does
+ * not apply.
+ *
+ * The information sets are those of an InformationSetIndex, and the
+ * regrets, the current strategy and the sum of the strategies played are
+ * primitive arrays indexed by action slot. Each iteration is made of three
+ * passes over the flat tree, none of them recursive:
+ *  - top-down, the probabilities of reaching every node (by player 1, by
+ *    player 2 and by nature) under the current strategy;
+ *  - bottom-up, the expected payoffs of every node and the counterfactual
+ *    regret of every edge out of a player node, stored by the position of
+ *    the child;
+ *  - for every information set, the regrets of the edges of its nodes are
+ *    added to the regrets of its actions, and the strategy is updated by
+ *    regret matching.
+ * Every write in a pass goes to a location owned by a single node or a
+ * single information set, so the nodes of a level (and the information
+ * sets) are split across a fork-join pool without locks.
+ *
+ * The solver is anytime: solve(budget) runs iterations until the budget is
+ * spent, and later calls continue from where the previous ones stopped.
+ * The strategy to play is the average strategy, weighted by iteration.
+ */
+public class CfrSolver {
+
+	/**
+	 * CFR_PLUS keeps the regrets non-negative (regret matching+); LINEAR
+	 * weights the regrets of iteration t by t. Both average the strategies
+	 * with weight t.
+	 */
+	public enum Variant { CFR_PLUS, LINEAR }
+
+	/* Ranges with fewer nodes or information sets are processed by the calling thread */
+	static final int PARALLEL_THRESHOLD = 1 << 13;
+	private static final int ITEMS_PER_TASK = 1 << 11;
+
+	private final FlatGameTree tree;
+	private final InformationSetIndex sets;
+	private final Variant variant;
+	private final ForkJoinPool pool;
+	private final int[] levels;
+
+	private final double[] regret;		// by slot
+	private final double[] strategy;	// by slot, the current strategy
+	private final double[] average;		// by slot, the weighted sum of the strategies played
+
+	private final double[] reach1;		// by position, probability that player 1 plays to the node
+	private final double[] reach2;		// by position, probability that player 2 plays to the node
+	private final double[] reachN;		// by position, probability that nature leads to the node
+	private final double[] value1;		// by position, expected payoff of player 1
+	private final double[] value2;		// by position, expected payoff of player 2
+	private final double[] edgeRegret;	// by position of the child, counterfactual regret of the edge
+
+	private int iterations = 0;
+	private long elapsed = 0;			// nanoseconds spent iterating
+
+	public CfrSolver(FlatGameTree tree) {
+		this(tree, Variant.CFR_PLUS, ForkJoinPool.commonPool());
+	}
+
+	public CfrSolver(FlatGameTree tree, Variant variant, ForkJoinPool pool) {
+		this.tree = tree;
+		this.sets = InformationSetIndex.of(tree);
+		this.variant = variant;
+		this.pool = pool;
+		this.levels = pool.getParallelism() > 1 ? tree.levels() : null;
+		int slots = this.sets.numberOfSlots();
+		this.regret = new double[slots];
+		this.strategy = new double[slots];
+		this.average = new double[slots];
+		int n = tree.size();
+		this.reach1 = new double[n];
+		this.reach2 = new double[n];
+		this.reachN = new double[n];
+		this.value1 = new double[n];
+		this.value2 = new double[n];
+		this.edgeRegret = new double[n];
+		for(int s = 0; s < this.sets.numberOfSets(); s++)
+			match(s);
+	}
+
+	/**
+	 * Returns the solver of a game tree, created once over its
+	 * CompactGameTree and memoized on the tree (see GameTree.getAttachment),
+	 * so that every round continues refining the same strategy.
+	 * @param tree the game tree.
+	 * @return the shared solver of the tree.
+	 */
+	public static CfrSolver fromTree(GameTree tree) {
+		return tree.getAttachment(CfrSolver.class, t -> new CfrSolver(CompactGameTree.of(t)));
+	}
+
+	/**
+	 * @return the information sets of the tree.
+	 */
+	public InformationSetIndex getInformationSets() {
+		return this.sets;
+	}
+
+	/**
+	 * @return the number of iterations run so far.
+	 */
+	public synchronized int getIterations() {
+		return this.iterations;
+	}
+
+	/**
+	 * @return the number of iterations per second run so far.
+	 */
+	public synchronized double getIterationsPerSecond() {
+		return this.elapsed == 0 ? 0 : this.iterations * 1e9 / this.elapsed;
+	}
+
+	/**
+	 * Runs a fixed number of iterations.
+	 * @param count the number of iterations.
+	 */
+	public synchronized void iterate(int count) {
+		for(int i = 0; i < count; i++)
+			iteration();
+	}
+
+	/**
+	 * Runs iterations while the next one is expected to end within budget.
+	 * @param budget time available, in milliseconds.
+	 * @return the number of iterations run.
+	 */
+	public synchronized int solve(long budget) {
+		long deadline = System.nanoTime() + budget * 1000000;
+		int count = 0;
+		long last = 0;
+		while(System.nanoTime() + last - deadline < 0) {
+			long start = System.nanoTime();
+			iteration();
+			last = System.nanoTime() - start;
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Runs iterations within the time left in the current round.
+	 * @param request the strategy requested in the current round.
+	 * @param margin time kept to deliver the strategy, in milliseconds.
+	 * @return the number of iterations run.
+	 */
+	public int solve(PlayStrategyInterface request, long margin) {
+		return solve(Math.max(0, request.timeToExpire() - margin));
+	}
+
+	private void iteration() {
+		long start = System.nanoTime();
+		this.iterations++;
+		int n = this.tree.size();
+		this.reach1[0] = 1;
+		this.reach2[0] = 1;
+		this.reachN[0] = 1;
+		if(this.levels == null) {
+			forward(0, n);
+			backward(0, n);
+		}
+		else {
+			for(int l = 0; l < this.levels.length - 1; l++)
+				run(Pass.FORWARD, this.levels[l], this.levels[l + 1]);
+			for(int l = this.levels.length - 2; l >= 0; l--)
+				run(Pass.BACKWARD, this.levels[l], this.levels[l + 1]);
+		}
+		run(Pass.UPDATE, 0, this.sets.numberOfSets());
+		this.elapsed += System.nanoTime() - start;
+	}
+
+	private enum Pass { FORWARD, BACKWARD, UPDATE }
+
+	private void run(Pass pass, int from, int to) {
+		if(to - from < PARALLEL_THRESHOLD || this.pool.getParallelism() < 2)
+			pass(pass, from, to);
+		else
+			this.pool.invoke(new PassTask(pass, from, to));
+	}
+
+	private void pass(Pass pass, int from, int to) {
+		switch(pass) {
+		case FORWARD:
+			forward(from, to);
+			break;
+		case BACKWARD:
+			backward(from, to);
+			break;
+		case UPDATE:
+			update(from, to);
+			break;
+		}
+	}
+
+	private class PassTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Pass pass;
+		private final int from;
+		private final int to;
+
+		PassTask(Pass pass, int from, int to) {
+			this.pass = pass;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(this.to - this.from <= ITEMS_PER_TASK) {
+				pass(this.pass, this.from, this.to);
+				return;
+			}
+			int middle = (this.from + this.to) >>> 1;
+			invokeAll(new PassTask(this.pass, this.from, middle), new PassTask(this.pass, middle, this.to));
+		}
+	}
+
+	/*
+	 * Propagates the reach probabilities of the nodes in [from, to) to their children.
+	 */
+	private void forward(int from, int to) {
+		FlatGameTree t = this.tree;
+		for(int p = from; p < to; p++) {
+			int first = t.firstChild(p);
+			int last = first + t.childCount(p);
+			double r1 = this.reach1[p];
+			double r2 = this.reach2[p];
+			double rn = this.reachN[p];
+			boolean nature = t.isNature(p);
+			boolean player1 = t.isPlayer1(p);
+			for(int c = first; c < last; c++) {
+				double s = nature ? t.weight(c) : this.strategy[this.sets.slotOf(c)];
+				this.reach1[c] = player1 && !nature ? r1 * s : r1;
+				this.reach2[c] = !player1 && !nature ? r2 * s : r2;
+				this.reachN[c] = nature ? rn * s : rn;
+			}
+		}
+	}
+
+	/*
+	 * Computes the values of the nodes in [from, to), in decreasing order,
+	 * and the counterfactual regrets of the edges out of their player nodes.
+	 */
+	private void backward(int from, int to) {
+		FlatGameTree t = this.tree;
+		for(int p = to - 1; p >= from; p--) {
+			int first = t.firstChild(p);
+			int last = first + t.childCount(p);
+			if(first == last) {
+				this.value1[p] = t.payoffP1(p);
+				this.value2[p] = t.payoffP2(p);
+				continue;
+			}
+			boolean nature = t.isNature(p);
+			double v1 = 0;
+			double v2 = 0;
+			for(int c = first; c < last; c++) {
+				double s = nature ? t.weight(c) : this.strategy[this.sets.slotOf(c)];
+				v1 += s * this.value1[c];
+				v2 += s * this.value2[c];
+			}
+			this.value1[p] = v1;
+			this.value2[p] = v2;
+			if(nature)
+				continue;
+			if(t.isPlayer1(p)) {
+				double opponent = this.reach2[p] * this.reachN[p];
+				for(int c = first; c < last; c++)
+					this.edgeRegret[c] = opponent * (this.value1[c] - v1);
+			}
+			else {
+				double opponent = this.reach1[p] * this.reachN[p];
+				for(int c = first; c < last; c++)
+					this.edgeRegret[c] = opponent * (this.value2[c] - v2);
+			}
+		}
+	}
+
+	/*
+	 * Accumulates the regrets and the average strategy of the information
+	 * sets in [from, to), and updates their current strategy.
+	 */
+	private void update(int from, int to) {
+		FlatGameTree t = this.tree;
+		InformationSetIndex is = this.sets;
+		double weight = this.iterations;
+		double regretWeight = this.variant == Variant.LINEAR ? weight : 1;
+		for(int s = from; s < to; s++) {
+			int firstSlot = is.firstSlot(s);
+			int lastSlot = firstSlot + is.numberOfActions(s);
+			boolean player1 = is.isPlayer1(s);
+			double reach = 0;
+			for(int i = is.firstMember(s); i < is.firstMember(s) + is.numberOfMembers(s); i++) {
+				int p = is.member(i);
+				reach += player1 ? this.reach1[p] : this.reach2[p];
+				int first = t.firstChild(p);
+				for(int c = first; c < first + t.childCount(p); c++)
+					this.regret[is.slotOf(c)] += regretWeight * this.edgeRegret[c];
+			}
+			for(int k = firstSlot; k < lastSlot; k++) {
+				this.average[k] += weight * reach * this.strategy[k];
+				if(this.variant == Variant.CFR_PLUS && this.regret[k] < 0)
+					this.regret[k] = 0;
+			}
+			match(s);
+		}
+	}
+
+	/*
+	 * Regret matching: the current strategy of a set is proportional to the
+	 * positive regrets of its actions, uniform if there are none.
+	 */
+	private void match(int s) {
+		int firstSlot = this.sets.firstSlot(s);
+		int lastSlot = firstSlot + this.sets.numberOfActions(s);
+		double total = 0;
+		for(int k = firstSlot; k < lastSlot; k++)
+			total += Math.max(0, this.regret[k]);
+		for(int k = firstSlot; k < lastSlot; k++)
+			this.strategy[k] = total > 0 ? Math.max(0, this.regret[k]) / total : 1.0 / (lastSlot - firstSlot);
+	}
+
+	/**
+	 * @param slot an action slot of the information set index.
+	 * @return the probability of the action in the average strategy.
+	 */
+	public synchronized double getAverageStrategy(int slot) {
+		int s = -1;
+		//Information sets are numbered in slot order, so find the set by binary search
+		int low = 0;
+		int high = this.sets.numberOfSets() - 1;
+		while(low <= high) {
+			int middle = (low + high) >>> 1;
+			if(this.sets.firstSlot(middle) <= slot) {
+				s = middle;
+				low = middle + 1;
+			}
+			else
+				high = middle - 1;
+		}
+		return averageOf(s, slot);
+	}
+
+	private double averageOf(int s, int slot) {
+		int firstSlot = this.sets.firstSlot(s);
+		int lastSlot = firstSlot + this.sets.numberOfActions(s);
+		double total = 0;
+		for(int k = firstSlot; k < lastSlot; k++)
+			total += this.average[k];
+		return total > 0 ? this.average[slot] / total : 1.0 / (lastSlot - firstSlot);
+	}
+
+	/**
+	 * Writes the average strategy into a strategy request.
+	 * @param keys the keys of the strategy request.
+	 * @param myStrategy the strategy request.
+	 */
+	public synchronized void write(StrategyKeys keys, PlayStrategyInterface myStrategy) {
+		double[] profile = keys.newProfile();
+		for(int s = 0; s < this.sets.numberOfSets(); s++) {
+			int firstSlot = this.sets.firstSlot(s);
+			for(int k = firstSlot; k < firstSlot + this.sets.numberOfActions(s); k++) {
+				int id = keys.getSymbolTable().idOf(this.tree.labelOf(this.sets.labelId(k)));
+				if(id >= 0 && id < profile.length)
+					profile[id] = averageOf(s, k);
+			}
+		}
+		keys.write(profile, myStrategy);
+	}
+}
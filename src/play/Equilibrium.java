@@ -0,0 +1,74 @@
+package play;
+
+/**
+ * A Nash equilibrium (in mixed strategies) of a NormalFormGame: the
+ * probability of every action of each player and the expected payoffs.
+ * The strategies are indexed as the actions of the game they were
+ * computed for.
+ */
+public class Equilibrium {
+
+	private final double[] rowStrategy;
+	private final double[] colStrategy;
+	private final double payoffP1;
+	private final double payoffP2;
+
+	public Equilibrium(double[] rowStrategy, double[] colStrategy, double payoffP1, double payoffP2) {
+		this.rowStrategy = rowStrategy;
+		this.colStrategy = colStrategy;
+		this.payoffP1 = payoffP1;
+		this.payoffP2 = payoffP2;
+	}
+
+	/**
+	 * Expands an equilibrium of a compacted game (see NormalFormGame.compact)
+	 * to the actions of the original game.
+	 * @param rows the action of the original game of each row of the compacted one.
+	 * @param cols the action of the original game of each column of the compacted one.
+	 * @param nRow number of actions of player 1 in the original game.
+	 * @param nCol number of actions of player 2 in the original game.
+	 * @return the equilibrium of the original game.
+	 */
+	public Equilibrium expand(int[] rows, int[] cols, int nRow, int nCol) {
+		double[] x = new double[nRow];
+		double[] y = new double[nCol];
+		for(int i = 0; i < rows.length; i++)
+			x[rows[i]] = this.rowStrategy[i];
+		for(int j = 0; j < cols.length; j++)
+			y[cols[j]] = this.colStrategy[j];
+		return new Equilibrium(x, y, this.payoffP1, this.payoffP2);
+	}
+
+	/**
+	 * @return the probability of each action of player 1 (not copied).
+	 */
+	public double[] getRowStrategy() {
+		return this.rowStrategy;
+	}
+
+	/**
+	 * @return the probability of each action of player 2 (not copied).
+	 */
+	public double[] getColStrategy() {
+		return this.colStrategy;
+	}
+
+	public double getPayoffP1() {
+		return this.payoffP1;
+	}
+
+	public double getPayoffP2() {
+		return this.payoffP2;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("(");
+		for(int i = 0; i < this.rowStrategy.length; i++)
+			sb.append(i == 0 ? "" : ", ").append(String.format("%.3f", this.rowStrategy[i]));
+		sb.append(") x (");
+		for(int j = 0; j < this.colStrategy.length; j++)
+			sb.append(j == 0 ? "" : ", ").append(String.format("%.3f", this.colStrategy[j]));
+		return sb.append(") -> ").append(String.format("%.3f : %.3f", this.payoffP1, this.payoffP2)).toString();
+	}
+}
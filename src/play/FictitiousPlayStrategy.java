@@ -0,0 +1,173 @@
+package play;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import gametree.CompactGameTree;
+import gametree.GameNode;
+import gametree.GameNodeDoesNotExistException;
+import gametree.GameTree;
+import gametree.InformationSetIndex;
+
+/**
+ * Fictitious play: in each round, best-responds to the empirical mixed
+ * strategy of the opponent, i.e. to the frequency of each of its actions
+ * in the previous rounds, in both roles.
+ *
+ * The game must be in normal form (see NormalFormGame.fromTree); other
+ * games are played uniformly. The rounds are recorded in an OpponentHistory,
+ * which counts the actions of the opponent. Instead of multiplying the
+ * payoff matrix by those frequencies in every round, the strategy keeps the
+ * total payoff each of its actions would have earned against every action
+ * observed so far: a new observation adds one column (or row) of payoffs,
+ * so each round costs O(actions) however many rounds the match has. Ties
+ * between best responses are played uniformly.
+ */
+public class FictitiousPlayStrategy extends AnytimeStrategy {
+
+	private GameTree lastTree = null;
+	private NormalFormGame game = null;
+	private OpponentHistory history;
+	private Map<String, Integer> rowOfLabel;
+	private Map<String, Integer> colOfLabel;
+	private int[] rowSlot;		// slot of each row in the information sets of the history
+	private int[] colSlot;		// slot of each column in the information sets of the history
+	private double[] rowValue;	// payoff of each row against the columns observed so far
+	private double[] colValue;	// payoff of each column against the rows observed so far
+	private double[] rowStrategy;
+	private double[] colStrategy;
+
+	/*
+	 * Prepares the history and the values for the game of the tree, when
+	 * the tree changes. Returns false if the game is not in normal form.
+	 */
+	private boolean prepare() {
+		GameTree tree = this.tree;
+		if(tree == this.lastTree)
+			return this.game != null;
+		this.game = NormalFormGame.fromTree(tree);
+		if(this.game == null) {
+			System.err.println("Not a normal form game, playing uniformly.");
+			this.lastTree = tree;
+			return false;
+		}
+		int n = this.game.nRow;
+		int m = this.game.nCol;
+		this.history = new OpponentHistory(tree, 1);
+		this.rowOfLabel = new HashMap<String, Integer>();
+		this.colOfLabel = new HashMap<String, Integer>();
+		for(int i = 0; i < n; i++)
+			this.rowOfLabel.put(this.game.rowLabels[i], i);
+		for(int j = 0; j < m; j++)
+			this.colOfLabel.put(this.game.colLabels[j], j);
+		this.rowSlot = new int[n];
+		this.colSlot = new int[m];
+		InformationSetIndex sets = this.history.getInformationSets();
+		CompactGameTree t = CompactGameTree.of(tree);
+		for(int k = 0; k < sets.numberOfSlots(); k++) {
+			String label = t.labelOf(sets.labelId(k));
+			Integer row = this.rowOfLabel.get(label);
+			Integer col = this.colOfLabel.get(label);
+			if(row != null)
+				this.rowSlot[row] = k;
+			if(col != null)
+				this.colSlot[col] = k;
+		}
+		this.rowValue = new double[n];
+		this.colValue = new double[m];
+		this.rowStrategy = new double[n];
+		this.colStrategy = new double[m];
+		this.lastTree = tree; //Last: once it is set the game is taken to be ready
+		return true;
+	}
+
+	/*
+	 * Adds the payoffs against the action of the opponent in the round that
+	 * ended at a terminal node: the row of its parent or the column of the
+	 * node.
+	 */
+	private void observe(int finalNode, boolean asPlayer1) {
+		GameNode terminal = this.lastTree.getNodeByIndex(finalNode);
+		if(terminal == null)
+			return;
+		Integer row;
+		Integer col;
+		try {
+			row = this.rowOfLabel.get(terminal.getAncestor().getLabel());
+			col = this.colOfLabel.get(terminal.getLabel());
+		} catch (GameNodeDoesNotExistException e) {
+			return;
+		}
+		if(row == null || col == null)
+			return;
+		NormalFormGame g = this.game;
+		if(asPlayer1) { //The opponent played column col: add that column to the value of our rows
+			int at = col * g.nRow;
+			for(int i = 0; i < g.nRow; i++)
+				this.rowValue[i] += g.u1t[at + i];
+		}
+		else { //The opponent played row row: add that row to the value of our columns
+			int at = row * g.nCol;
+			for(int j = 0; j < g.nCol; j++)
+				this.colValue[j] += g.u2[at + j];
+		}
+	}
+
+	/*
+	 * Writes in strategy the uniform mix of the actions of highest value.
+	 */
+	private static void bestResponse(double[] value, double[] strategy) {
+		double best = Double.NEGATIVE_INFINITY;
+		for(double v : value)
+			best = Math.max(best, v);
+		double tolerance = 1e-9 * Math.max(1, Math.abs(best));
+		int ties = 0;
+		for(int k = 0; k < value.length; k++) {
+			strategy[k] = value[k] >= best - tolerance ? 1 : 0;
+			ties += (int) strategy[k];
+		}
+		for(int k = 0; k < strategy.length; k++)
+			strategy[k] /= ties;
+	}
+
+	/* (non-Javadoc)
+	 * @see play.AnytimeStrategy#compute(play.PlayStrategyInterface, play.AnytimeStrategy.Incumbent)
+	 */
+	@Override
+	protected synchronized void compute(PlayStrategyInterface request, Incumbent incumbent) {
+		if(!prepare()) {
+			incumbent.publish(uniformStrategy(this.lastTree, request));
+			return;
+		}
+		if(this.history.record(request)) {
+			observe(request.getFinalP1Node(), true);
+			observe(request.getFinalP2Node(), false);
+		}
+		//Before any observation every action has value 0, and the strategy is uniform
+		bestResponse(this.rowValue, this.rowStrategy);
+		bestResponse(this.colValue, this.colStrategy);
+		Map<String, Double> strategy = new LinkedHashMap<String, Double>();
+		for(int i = 0; i < this.game.nRow; i++)
+			strategy.put(this.game.rowLabels[i], this.rowStrategy[i]);
+		for(int j = 0; j < this.game.nCol; j++)
+			strategy.put(this.game.colLabels[j], this.colStrategy[j]);
+		incumbent.publish(strategy);
+	}
+
+	/**
+	 * @param row an action of player 1.
+	 * @return the number of times the opponent played it as player 1.
+	 */
+	public synchronized int getRowCount(int row) {
+		return this.history.getCount(this.rowSlot[row]);
+	}
+
+	/**
+	 * @param col an action of player 2.
+	 * @return the number of times the opponent played it as player 2.
+	 */
+	public synchronized int getColumnCount(int col) {
+		return this.history.getCount(this.colSlot[col]);
+	}
+}
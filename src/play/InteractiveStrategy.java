@@ -16,10 +16,8 @@ public class InteractiveStrategy extends Strategy {
 		System.err.println("Interactive Strategy is now active...");
 		BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
 		NonBlockingReader r = new NonBlockingReader();
-		while(!this.isTreeKnown()) {
+		while(!TreeAvailability.await(this, 1000))
 			System.err.println("Waiting for game tree to become available.");
-			Thread.sleep(1000);
-		}
 	
 		while(true) {
 		
@@ -0,0 +1,254 @@
+package play;
+
+import java.util.BitSet;
+
+/**
+ * Iterated elimination of dominated actions in a NormalFormGame.
+ *
+ * The actions that are still considered are kept in bitsets. For every
+ * ordered pair of actions (k, i) of the same player the solver counts the
+ * columns (or rows) where k is not better than i, and, for weak dominance,
+ * where k is worse than i: k strictly dominates i when the first count is
+ * zero. Removing an action of one player only changes the counts of the
+ * pairs of the other player, and only the actions whose counts reach a
+ * dominance condition are rechecked, so no pair is ever recomputed from
+ * scratch. Dominance by mixed strategies is checked with a LinearProgram
+ * once no pure dominance remains.
+ *
+ * The elimination of strictly dominated actions preserves all equilibria.
+ * The elimination of weakly dominated ones may lose some, and its result
+ * may depend on the order of elimination.
+ */
+public class IteratedDominance {
+
+	private static final double EPS = 1e-9;
+
+	private final NormalFormGame game;
+	private final boolean mixed;
+
+	private final BitSet rows;
+	private final BitSet cols;
+	private final BitSet dirtyRows;
+	private final BitSet dirtyCols;
+	private final int[] rowNotBetter;	// [k*nRow+i]: columns where row k is not better than row i
+	private final int[] rowWorse;		// [k*nRow+i]: columns where row k is worse than row i
+	private final int[] colNotBetter;	// [k*nCol+l]: rows where column k is not better than column l
+	private final int[] colWorse;		// [k*nCol+l]: rows where column k is worse than column l
+	private boolean mixedRowsStale;
+	private boolean mixedColsStale;
+
+	/**
+	 * @param game the game to reduce (the actions it already excludes
+	 * are not considered).
+	 * @param weak if true weakly dominated actions are also removed.
+	 * @param mixed if true actions strictly dominated by mixed strategies
+	 * are also removed.
+	 */
+	public IteratedDominance(NormalFormGame game, boolean weak, boolean mixed) {
+		this.game = game;
+		this.mixed = mixed;
+		this.rows = new BitSet(game.nRow);
+		this.cols = new BitSet(game.nCol);
+		for (int i = 0; i<game.nRow; i++) if (game.pRow[i]) this.rows.set(i);
+		for (int j = 0; j<game.nCol; j++) if (game.pCol[j]) this.cols.set(j);
+		this.dirtyRows = (BitSet) this.rows.clone();
+		this.dirtyCols = (BitSet) this.cols.clone();
+		this.rowNotBetter = new int[game.nRow * game.nRow];
+		this.colNotBetter = new int[game.nCol * game.nCol];
+		this.rowWorse = weak ? new int[game.nRow * game.nRow] : null;
+		this.colWorse = weak ? new int[game.nCol * game.nCol] : null;
+		count(game.u1, game.nRow, game.nCol, this.rows, this.cols, this.rowNotBetter, this.rowWorse);
+		count(game.u2t, game.nCol, game.nRow, this.cols, this.rows, this.colNotBetter, this.colWorse);
+		this.mixedRowsStale = true;
+		this.mixedColsStale = true;
+	}
+
+	/**
+	 * Removes the strictly dominated actions of game.
+	 * @param game a game.
+	 * @return the reduced game.
+	 */
+	public static NormalFormGame strict(NormalFormGame game) {
+		return new IteratedDominance(game, false, false).solve();
+	}
+
+	/*
+	 * Initial counts for the actions of one player, whose payoffs are u
+	 * (row-major, one row per action of that player).
+	 */
+	private static void count(double[] u, int n, int m, BitSet own, BitSet other, int[] notBetter, int[] worse) {
+		for (int k = own.nextSetBit(0); k >= 0; k = own.nextSetBit(k+1)) {
+			for (int i = own.nextSetBit(0); i >= 0; i = own.nextSetBit(i+1)) {
+				if (i == k) continue;
+				int nb = 0;
+				int w = 0;
+				for (int j = other.nextSetBit(0); j >= 0; j = other.nextSetBit(j+1)) {
+					double a = u[k*m + j];
+					double b = u[i*m + j];
+					if (a <= b) nb++;
+					if (a < b) w++;
+				}
+				notBetter[k*n + i] = nb;
+				if (worse != null) worse[k*n + i] = w;
+			}
+		}
+	}
+
+	/**
+	 * Runs the elimination to completion.
+	 * @return a copy of the game in which only the surviving actions are
+	 * considered.
+	 */
+	public NormalFormGame solve() {
+		while (true) {
+			while (!this.dirtyRows.isEmpty() || !this.dirtyCols.isEmpty()) {
+				int i = this.dirtyRows.nextSetBit(0);
+				if (i >= 0) {
+					this.dirtyRows.clear(i);
+					if (this.rows.get(i) && dominatedRow(i)) removeRow(i);
+				}
+				int j = this.dirtyCols.nextSetBit(0);
+				if (j >= 0) {
+					this.dirtyCols.clear(j);
+					if (this.cols.get(j) && dominatedCol(j)) removeCol(j);
+				}
+			}
+			if (!this.mixed || !removeMixedDominated()) break;
+		}
+		boolean[] pRow = new boolean[this.game.nRow];
+		boolean[] pCol = new boolean[this.game.nCol];
+		for (int i = this.rows.nextSetBit(0); i >= 0; i = this.rows.nextSetBit(i+1)) pRow[i] = true;
+		for (int j = this.cols.nextSetBit(0); j >= 0; j = this.cols.nextSetBit(j+1)) pCol[j] = true;
+		return new NormalFormGame(this.game, pRow, pCol);
+	}
+
+	private boolean dominates(int[] notBetter, int[] worse, int index, int others) {
+		if (worse == null) return notBetter[index] == 0;
+		return worse[index] == 0 && notBetter[index] < others;
+	}
+
+	private boolean dominatedRow(int i) {
+		int n = this.game.nRow;
+		int others = this.cols.cardinality();
+		for (int k = this.rows.nextSetBit(0); k >= 0; k = this.rows.nextSetBit(k+1))
+			if (k != i && dominates(this.rowNotBetter, this.rowWorse, k*n + i, others)) return true;
+		return false;
+	}
+
+	private boolean dominatedCol(int l) {
+		int n = this.game.nCol;
+		int others = this.rows.cardinality();
+		for (int k = this.cols.nextSetBit(0); k >= 0; k = this.cols.nextSetBit(k+1))
+			if (k != l && dominates(this.colNotBetter, this.colWorse, k*n + l, others)) return true;
+		return false;
+	}
+
+	/*
+	 * Removes row i and updates the counts of the pairs of columns; the
+	 * columns that become dominated are marked for rechecking.
+	 */
+	private void removeRow(int i) {
+		this.rows.clear(i);
+		this.mixedColsStale = true;
+		update(this.game.u2, i * this.game.nCol, this.game.nCol, this.cols, this.colNotBetter, this.colWorse,
+				this.rows.cardinality(), this.dirtyCols);
+	}
+
+	private void removeCol(int j) {
+		this.cols.clear(j);
+		this.mixedRowsStale = true;
+		update(this.game.u1t, j * this.game.nRow, this.game.nRow, this.rows, this.rowNotBetter, this.rowWorse,
+				this.cols.cardinality(), this.dirtyRows);
+	}
+
+	/*
+	 * The removed action of one player had payoffs u[at + k] for each
+	 * action k of the other player (n actions, those in own are active).
+	 */
+	private void update(double[] u, int at, int n, BitSet own, int[] notBetter, int[] worse, int others, BitSet dirty) {
+		for (int k = own.nextSetBit(0); k >= 0; k = own.nextSetBit(k+1)) {
+			double a = u[at + k];
+			for (int l = own.nextSetBit(0); l >= 0; l = own.nextSetBit(l+1)) {
+				if (l == k) continue;
+				double b = u[at + l];
+				if (a > b) continue; //Counts unchanged, and removing such a row or column never creates a dominance
+				int index = k*n + l;
+				notBetter[index]--;
+				if (worse != null && a < b) worse[index]--;
+				if (dominates(notBetter, worse, index, others)) dirty.set(l);
+			}
+		}
+	}
+
+	/*
+	 * Removes the actions that are strictly dominated by mixed strategies,
+	 * checking only the players whose opponents lost actions since their
+	 * last check. Removing a dominated action does not change which other
+	 * actions of the same player are dominated, so one pass suffices.
+	 */
+	private boolean removeMixedDominated() {
+		boolean removed = false;
+		if (this.mixedRowsStale) {
+			this.mixedRowsStale = false;
+			for (int i = this.rows.nextSetBit(0); i >= 0; i = this.rows.nextSetBit(i+1)) {
+				if (mixedDominated(this.game.u1, this.game.nCol, this.rows, this.cols, i)) {
+					removeRow(i);
+					removed = true;
+				}
+			}
+		}
+		if (this.mixedColsStale) {
+			this.mixedColsStale = false;
+			for (int j = this.cols.nextSetBit(0); j >= 0; j = this.cols.nextSetBit(j+1)) {
+				if (mixedDominated(this.game.u2t, this.game.nRow, this.cols, this.rows, j)) {
+					removeCol(j);
+					removed = true;
+				}
+			}
+		}
+		return removed;
+	}
+
+	/*
+	 * Action i (of the player whose payoffs are u, one row per action with
+	 * stride m) is strictly dominated by a mixture of the other actions in
+	 * own iff the program
+	 *   maximize sum_j q_j u'(i,j)  s.t.  sum_j q_j u'(k,j) <= 1 for k != i,  q >= 0
+	 * has value below 1, where u' are the payoffs shifted to be positive
+	 * (this is the dual of minimizing the total weight of a mixture of the
+	 * other actions that is at least as good as i everywhere).
+	 */
+	private boolean mixedDominated(double[] u, int m, BitSet own, BitSet other, int i) {
+		int nOwn = own.cardinality() - 1;
+		int nOther = other.cardinality();
+		if (nOwn < 2) return false; //Pure dominance is already excluded
+		double min = Double.POSITIVE_INFINITY;
+		for (int j = other.nextSetBit(0); j >= 0; j = other.nextSetBit(j+1)) {
+			/*
+			 * An action that is a best response to some pure action of the opponent cannot be dominated 
+			 */
+			double best = Double.NEGATIVE_INFINITY;
+			for (int k = own.nextSetBit(0); k >= 0; k = own.nextSetBit(k+1)) {
+				double v = u[k*m + j];
+				if (k != i && v > best) best = v;
+				if (v < min) min = v;
+			}
+			if (u[i*m + j] >= best) return false;
+		}
+		double shift = 1 - min;
+
+		LinearProgram lp = new LinearProgram(nOwn, nOther);
+		int row = 0;
+		for (int k = own.nextSetBit(0); k >= 0; k = own.nextSetBit(k+1)) {
+			if (k == i) continue;
+			int col = 0;
+			for (int j = other.nextSetBit(0); j >= 0; j = other.nextSetBit(j+1))
+				lp.setCoefficient(row, col++, u[k*m + j] + shift);
+			lp.setBound(row++, 1);
+		}
+		int col = 0;
+		for (int j = other.nextSetBit(0); j >= 0; j = other.nextSetBit(j+1))
+			lp.setObjective(col++, u[i*m + j] + shift);
+		return lp.solve() == LinearProgram.OPTIMAL && lp.getValue() < 1 - EPS;
+	}
+}
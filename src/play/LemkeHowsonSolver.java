@@ -0,0 +1,288 @@
+package play;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Computes one Nash equilibrium of a NormalFormGame with the Lemke-Howson
+ * complementary pivoting algorithm, in time that is usually polynomial
+ * in the number of actions (unlike support enumeration).
+ *
+ * The strictly dominated actions are removed first and the payoffs are
+ * shifted to be positive. The two tableaux, [A | I | 1] over the strategy
+ * of player 2 and [B' | I | 1] over the strategy of player 1 (B' being the
+ * transpose of the payoffs of player 2), are flat row-major double[]. The
+ * actions of player 1 are the labels 0..n-1 and the actions of player 2 the
+ * labels n..n+m-1; each starting label leads to an equilibrium, possibly a
+ * different one. Ties in the ratio test are broken lexicographically (on
+ * the columns of the identity block), so degenerate games are handled
+ * without perturbing payoffs or retrying.
+ *
+ * solve(budget) follows the paths of all the starting labels in a fork-join
+ * pool and returns the first equilibrium found; the other paths stop at the
+ * next pivot.
+ */
+public class LemkeHowsonSolver {
+
+	private static final double EPS = 1e-9;
+
+	private final NormalFormGame game;
+	private final int[] rows; // action of game of each row of the reduced game
+	private final int[] cols; // action of game of each column of the reduced game
+	private final int n;
+	private final int m;
+	private final double[] a; // payoffs of player 1 in the reduced game, positive, row-major
+	private final double[] b; // payoffs of player 2 in the reduced game, positive, column-major
+	private final ForkJoinPool pool;
+
+	public LemkeHowsonSolver(NormalFormGame game) {
+		this(game, ForkJoinPool.commonPool());
+	}
+
+	public LemkeHowsonSolver(NormalFormGame game, ForkJoinPool pool) {
+		this.game = game;
+		NormalFormGame strict = IteratedDominance.strict(game);
+		NormalFormGame reduced = strict.compact();
+		this.rows = strict.consideredRows();
+		this.cols = strict.consideredColumns();
+		this.n = reduced.nRow;
+		this.m = reduced.nCol;
+		this.a = positive(reduced.u1);
+		this.b = positive(reduced.u2t);
+		this.pool = pool;
+	}
+
+	private static double[] positive(double[] u) {
+		double min = 0;
+		for(double v : u)
+			min = Math.min(min, v);
+		double[] p = new double[u.length];
+		for(int i = 0; i < u.length; i++)
+			p[i] = u[i] - min + 1;
+		return p;
+	}
+
+	/**
+	 * @return the number of starting labels (actions of both players that
+	 * survive the elimination of strictly dominated actions).
+	 */
+	public int numberOfLabels() {
+		return this.n + this.m;
+	}
+
+	/**
+	 * Follows the path of a single starting label.
+	 * @param label a starting label, in [0, numberOfLabels()).
+	 * @return the equilibrium at the end of the path.
+	 */
+	public Equilibrium solve(int label) {
+		return new Path(label).run(null, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Follows the paths of all starting labels in parallel.
+	 * @param budget time available, in milliseconds.
+	 * @return the first equilibrium found, null if none was found within budget.
+	 */
+	public Equilibrium solve(long budget) {
+		long deadline = budget >= Long.MAX_VALUE / 1000000 ? Long.MAX_VALUE : System.nanoTime() + budget * 1000000;
+		final AtomicReference<Equilibrium> found = new AtomicReference<Equilibrium>();
+		final List<RecursiveAction> tasks = new ArrayList<RecursiveAction>(this.n + this.m);
+		for(int label = 0; label < this.n + this.m; label++)
+			tasks.add(new PathTask(label, found, deadline));
+		this.pool.invoke(new RecursiveAction() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+		return found.get();
+	}
+
+	/**
+	 * Follows the paths of all starting labels in parallel, within the time
+	 * left in the current round.
+	 * @param request the strategy requested in the current round.
+	 * @param margin time kept to deliver the strategy, in milliseconds.
+	 * @return the first equilibrium found, null if none was found in time.
+	 */
+	public Equilibrium solve(PlayStrategyInterface request, long margin) {
+		return solve(Math.max(0, request.timeToExpire() - margin));
+	}
+
+	private class PathTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int label;
+		private final AtomicReference<Equilibrium> found;
+		private final long deadline;
+
+		PathTask(int label, AtomicReference<Equilibrium> found, long deadline) {
+			this.label = label;
+			this.found = found;
+			this.deadline = deadline;
+		}
+
+		@Override
+		protected void compute() {
+			if(this.found.get() != null || System.nanoTime() - this.deadline > 0)
+				return;
+			Equilibrium e = new Path(this.label).run(this.found, this.deadline);
+			if(e != null)
+				this.found.compareAndSet(null, e);
+		}
+	}
+
+	/*
+	 * The tableaux of one path. Tableau 1 has a row per action i of player 1,
+	 * [A(i,.) | e_i | 1], with columns y_0..y_m-1 (labels n..n+m-1) and the
+	 * slacks r_0..r_n-1 (labels 0..n-1). Tableau 2 has a row per action j of
+	 * player 2, [B'(j,.) | e_j | 1], with columns x_0..x_n-1 (labels 0..n-1)
+	 * and the slacks s_0..s_m-1 (labels n..n+m-1), so its column is the label.
+	 */
+	private class Path {
+		private final int start;
+		private final int width;
+		private final double[] t1;
+		private final double[] t2;
+		private final int[] basis1; // label of the basic variable of each row of t1
+		private final int[] basis2; // label of the basic variable of each row of t2
+
+		Path(int start) {
+			this.start = start;
+			this.width = n + m + 1;
+			this.t1 = new double[n * this.width];
+			this.t2 = new double[m * this.width];
+			this.basis1 = new int[n];
+			this.basis2 = new int[m];
+			for(int i = 0; i < n; i++) {
+				System.arraycopy(a, i * m, this.t1, i * this.width, m);
+				this.t1[i * this.width + m + i] = 1;
+				this.t1[i * this.width + this.width - 1] = 1;
+				this.basis1[i] = i;
+			}
+			for(int j = 0; j < m; j++) {
+				System.arraycopy(b, j * n, this.t2, j * this.width, n);
+				this.t2[j * this.width + n + j] = 1;
+				this.t2[j * this.width + this.width - 1] = 1;
+				this.basis2[j] = n + j;
+			}
+		}
+
+		/*
+		 * Pivots until the starting label leaves a basis. Returns null if
+		 * another path found an equilibrium first or the deadline passed.
+		 */
+		Equilibrium run(AtomicReference<Equilibrium> found, long deadline) {
+			int entering = this.start;
+			boolean first = this.start >= n; //y enters tableau 1, x enters tableau 2
+			while(true) {
+				if(found != null && found.get() != null)
+					return null;
+				if(deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0)
+					return null;
+				int leaving = first
+						? pivot(this.t1, this.basis1, n, m, entering < n ? m + entering : entering - n)
+						: pivot(this.t2, this.basis2, m, n, entering);
+				if(leaving < 0) //Cannot happen with positive payoffs
+					return null;
+				if(leaving == this.start)
+					break;
+				entering = leaving;
+				first = !first;
+			}
+			return equilibrium();
+		}
+
+		/*
+		 * Brings column col into the basis of tableau t (rows rows, identity
+		 * block starting at column identity) and returns the label that
+		 * leaves it.
+		 */
+		private int pivot(double[] t, int[] basis, int rows, int identity, int col) {
+			int w = this.width;
+			int row = -1;
+			for(int i = 0; i < rows; i++) {
+				double p = t[i * w + col];
+				if(p <= EPS)
+					continue;
+				if(row < 0 || lexicographicallySmaller(t, i, row, col, identity, rows))
+					row = i;
+			}
+			if(row < 0)
+				return -1;
+
+			int pr = row * w;
+			double inv = 1 / t[pr + col];
+			for(int j = 0; j < w; j++)
+				t[pr + j] *= inv;
+			for(int i = 0; i < rows; i++) {
+				if(i == row)
+					continue;
+				int r = i * w;
+				double f = t[r + col];
+				if(f == 0)
+					continue;
+				for(int j = 0; j < w; j++)
+					t[r + j] -= f * t[pr + j];
+			}
+			int leaving = basis[row];
+			basis[row] = t == this.t1 ? (col < m ? n + col : col - m) : col;
+			return leaving;
+		}
+
+		/*
+		 * Compares rows i and k on (rhs, identity block) divided by their
+		 * entry in column col.
+		 */
+		private boolean lexicographicallySmaller(double[] t, int i, int k, int col, int identity, int rows) {
+			int w = this.width;
+			double pi = t[i * w + col];
+			double pk = t[k * w + col];
+			double di = t[i * w + w - 1] / pi - t[k * w + w - 1] / pk;
+			if(Math.abs(di) > EPS)
+				return di < 0;
+			for(int c = identity; c < identity + rows; c++) {
+				double d = t[i * w + c] / pi - t[k * w + c] / pk;
+				if(Math.abs(d) > EPS)
+					return d < 0;
+			}
+			return false;
+		}
+
+		private Equilibrium equilibrium() {
+			int w = this.width;
+			double[] x = new double[n];
+			double[] y = new double[m];
+			for(int i = 0; i < n; i++)
+				if(this.basis1[i] >= n)
+					y[this.basis1[i] - n] = this.t1[i * w + w - 1];
+			for(int j = 0; j < m; j++)
+				if(this.basis2[j] < n)
+					x[this.basis2[j]] = this.t2[j * w + w - 1];
+			normalize(x);
+			normalize(y);
+			double[] rowStrategy = new double[game.nRow];
+			double[] colStrategy = new double[game.nCol];
+			for(int i = 0; i < n; i++)
+				rowStrategy[rows[i]] = x[i];
+			for(int j = 0; j < m; j++)
+				colStrategy[cols[j]] = y[j];
+			return new Equilibrium(rowStrategy, colStrategy, game.expectedPayoffP1(rowStrategy, colStrategy),
+					game.expectedPayoffP2(rowStrategy, colStrategy));
+		}
+	}
+
+	private static void normalize(double[] p) {
+		double sum = 0;
+		for(double v : p)
+			sum += v;
+		for(int i = 0; i < p.length; i++)
+			p[i] = Math.max(0, p[i]) / sum;
+	}
+}
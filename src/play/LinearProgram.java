@@ -0,0 +1,172 @@
+package play;
+
+import java.util.Arrays;
+
+/**
+ * Dense simplex solver for linear programs of the form
+ *
+ *   maximize c.x  subject to  A x <= b,  x >= 0,  with b >= 0
+ *
+ * which is the form of the programs that arise from normal form games once
+ * payoffs are made positive (the slack variables give a feasible starting
+ * basis). The tableau is a single row-major double[]; the solution of the
+ * dual program is read from the objective row at the end.
+ *
+ * Pivoting follows Dantzig's rule and switches to Bland's rule after a
+ * run of degenerate pivots, which guarantees termination.
+ */
+public class LinearProgram {
+
+	public static final int OPTIMAL = 0;
+	public static final int UNBOUNDED = 1;
+
+	private static final double EPS = 1e-9;
+	private static final int MAX_DEGENERATE_PIVOTS = 50;
+
+	private final int m;			// number of constraints
+	private final int n;			// number of variables
+	private final int width;		// n structural + m slack columns + right hand side
+	private final double[] tableau;	// (m+1) rows, the last being the objective
+	private final int[] basis;		// variable in the basis of each constraint row
+	private double value;
+
+	/**
+	 * Creates a program with m constraints over n variables, all
+	 * coefficients being zero.
+	 * @param m number of constraints.
+	 * @param n number of variables.
+	 */
+	public LinearProgram(int m, int n) {
+		this.m = m;
+		this.n = n;
+		this.width = n + m + 1;
+		this.tableau = new double[(m + 1) * this.width];
+		this.basis = new int[m];
+		reset();
+	}
+
+	/**
+	 * Zeroes every coefficient, so that the instance (and its buffers)
+	 * can be reused for another program of the same size.
+	 */
+	public void reset() {
+		Arrays.fill(this.tableau, 0);
+		for(int i = 0; i < this.m; i++) {
+			this.tableau[i * this.width + this.n + i] = 1;
+			this.basis[i] = this.n + i;
+		}
+		this.value = 0;
+	}
+
+	/**
+	 * Sets A[i][j].
+	 */
+	public void setCoefficient(int i, int j, double a) {
+		this.tableau[i * this.width + j] = a;
+	}
+
+	/**
+	 * Sets b[i], which must not be negative.
+	 */
+	public void setBound(int i, double b) {
+		if(b < 0)
+			throw new IllegalArgumentException("Bounds must not be negative");
+		this.tableau[i * this.width + this.width - 1] = b;
+	}
+
+	/**
+	 * Sets c[j].
+	 */
+	public void setObjective(int j, double c) {
+		this.tableau[this.m * this.width + j] = -c;
+	}
+
+	/**
+	 * Solves the program.
+	 * @return OPTIMAL or UNBOUNDED.
+	 */
+	public int solve() {
+		int objective = this.m * this.width;
+		int degenerate = 0;
+		while(true) {
+			boolean bland = degenerate >= MAX_DEGENERATE_PIVOTS;
+			int enter = -1;
+			for(int j = 0; j < this.width - 1; j++) {
+				double r = this.tableau[objective + j];
+				if(r < -EPS && (enter < 0 || (!bland && r < this.tableau[objective + enter]))) {
+					enter = j;
+					if(bland) break;
+				}
+			}
+			if(enter < 0)
+				break;
+
+			int leave = -1;
+			double best = 0;
+			for(int i = 0; i < this.m; i++) {
+				double a = this.tableau[i * this.width + enter];
+				if(a > EPS) {
+					double ratio = this.tableau[i * this.width + this.width - 1] / a;
+					if(leave < 0 || ratio < best - EPS
+							|| (ratio < best + EPS && this.basis[i] < this.basis[leave])) {
+						leave = i;
+						best = ratio;
+					}
+				}
+			}
+			if(leave < 0)
+				return UNBOUNDED;
+			degenerate = best < EPS ? degenerate + 1 : 0;
+			pivot(leave, enter);
+		}
+		this.value = this.tableau[objective + this.width - 1];
+		return OPTIMAL;
+	}
+
+	private void pivot(int row, int col) {
+		int w = this.width;
+		int pr = row * w;
+		double inv = 1 / this.tableau[pr + col];
+		for(int j = 0; j < w; j++)
+			this.tableau[pr + j] *= inv;
+		for(int i = 0; i <= this.m; i++) {
+			if(i == row)
+				continue;
+			int r = i * w;
+			double f = this.tableau[r + col];
+			if(f == 0)
+				continue;
+			for(int j = 0; j < w; j++)
+				this.tableau[r + j] -= f * this.tableau[pr + j];
+		}
+		this.basis[row] = col;
+	}
+
+	/**
+	 * @return the optimal value of the objective, after solve().
+	 */
+	public double getValue() {
+		return this.value;
+	}
+
+	/**
+	 * @param j a variable.
+	 * @return the value of x[j] in the optimal solution, after solve().
+	 */
+	public double getPrimal(int j) {
+		for(int i = 0; i < this.m; i++) {
+			if(this.basis[i] == j)
+				return this.tableau[i * this.width + this.width - 1];
+		}
+		return 0;
+	}
+
+	/**
+	 * @param i a constraint.
+	 * @return the value of the dual variable of constraint i in the
+	 * optimal solution of the dual program, after solve().
+	 */
+	public double getDual(int i) {
+		return this.tableau[this.m * this.width + this.n + i];
+	}
+}
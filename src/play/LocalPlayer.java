@@ -0,0 +1,33 @@
+package play;
+
+/**
+ * A strategy that can also be played without the game engine, by
+ * LocalTournament. The computation of a round is separated from the
+ * exchange of requests with the engine: execute receives a request, fills
+ * it with fillStrategy and delivers it, whereas LocalTournament sets the
+ * tree of the strategy and calls fillStrategy directly.
+ */
+public interface LocalPlayer {
+
+	/**
+	 * Fills the strategy of one round, using the tree of the strategy.
+	 * @param myStrategy the request of the round.
+	 * @return false if the request does not match the game.
+	 * @throws InterruptedException if interrupted.
+	 */
+	boolean fillStrategy(PlayStrategyInterface myStrategy) throws InterruptedException;
+
+	/**
+	 * Releases what the strategy holds for the game (threads, ...) once it
+	 * has ended.
+	 */
+	void endGame();
+
+	/**
+	 * Seeds the random choices of the strategy, if it makes any, so that
+	 * local tournaments can be replayed.
+	 * @param seed the seed.
+	 */
+	default void setSeed(long seed) {
+	}
+}
@@ -0,0 +1,479 @@
+package play;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import gametree.CompactGameTree;
+import gametree.GameTree;
+import gametree.MatrixGameSource;
+
+/**
+ * Runs the strategies listed in Strategy.conf against each other in this
+ * process, without the game engine, so that they can be load-tested and
+ * profiled.
+ *
+ * Every pair of strategies plays a match of a number of rounds of a local
+ * game (see MatrixGameSource). In each round both strategies receive a
+ * request, as they would from the engine, and each plays once as player 1
+ * and once as player 2 against the other; the moves are sampled from the
+ * mixed strategies they filled. Matches run in parallel, one per core, with
+ * new instances of the strategies. The scores of each match and the time
+ * each strategy took to fill its requests are reported at the end.
+ *
+ * Only strategies implementing LocalPlayer can be played locally; the
+ * others (e.g. InteractiveStrategy) are reported and left out.
+ *
+ * Usage: java play.LocalTournament [-conf file] [-game name|file]
+ * [-rounds n] [-time ms] [-threads n] [-seed n]
+ */
+public class LocalTournament {
+
+	public static final int DEFAULT_ROUNDS = 100;
+	public static final long DEFAULT_ROUND_TIME = 5000;
+
+	private final MatrixGameSource game;
+	private final int rounds;
+	private final long roundTime;
+	private final Map<String, Latency> latencies = new LinkedHashMap<String, Latency>();
+
+	/**
+	 * @param game the game played in every match.
+	 * @param rounds the number of rounds of a match.
+	 * @param roundTime the time given to fill each request, in milliseconds.
+	 */
+	public LocalTournament(MatrixGameSource game, int rounds, long roundTime) {
+		this.game = game;
+		this.rounds = rounds;
+		this.roundTime = roundTime;
+	}
+
+	/**
+	 * The result of a match.
+	 */
+	public static class MatchResult {
+		public final String first;
+		public final String second;
+		public final long scoreFirst;
+		public final long scoreSecond;
+		public final int rounds;
+
+		MatchResult(String first, String second, long scoreFirst, long scoreSecond, int rounds) {
+			this.first = first;
+			this.second = second;
+			this.scoreFirst = scoreFirst;
+			this.scoreSecond = scoreSecond;
+			this.rounds = rounds;
+		}
+
+		@Override
+		public String toString() {
+			return this.first + " vs " + this.second + ": " + this.scoreFirst + " - " + this.scoreSecond
+					+ " in " + this.rounds + " rounds";
+		}
+	}
+
+	/*
+	 * Time taken by a strategy to fill its requests.
+	 */
+	private static class Latency {
+		long decisions = 0;
+		long total = 0;		// nanoseconds
+		long max = 0;		// nanoseconds
+		long late = 0;		// requests filled after timeToExpire, or with a deadline hit of an AnytimeStrategy
+		long invalid = 0;	// information sets whose probabilities do not add to 1
+
+		synchronized void add(long time, boolean late) {
+			this.decisions++;
+			this.total += time;
+			this.max = Math.max(this.max, time);
+			if(late)
+				this.late++;
+		}
+
+		synchronized void invalid() {
+			this.invalid++;
+		}
+
+		@Override
+		public synchronized String toString() {
+			return this.decisions + " decisions, average " + String.format("%.3f", this.decisions == 0 ? 0 : this.total / 1e6 / this.decisions)
+					+ " ms, max " + String.format("%.3f", this.max / 1e6) + " ms, " + this.late + " late, "
+					+ this.invalid + " invalid";
+		}
+	}
+
+	/*
+	 * The request of a round, as the engine would send it.
+	 */
+	static class LocalRequest implements PlayStrategyInterface {
+		private final Map<String, Double> strategy = new LinkedHashMap<String, Double>();
+		private final long deadline;	// System.nanoTime()
+		private final int maximumIterations;
+		private final boolean firstRound;
+		private final int finalP1;
+		private final int finalP2;
+		private final int[] lastScores;	// self as P1, self as P2, opponent as P1, opponent as P2
+		private boolean quit = false;
+
+		LocalRequest(List<String> keys, long time, int maximumIterations, int finalP1, int finalP2, int[] lastScores) {
+			for(String k : keys)
+				this.strategy.put(k, 0.0);
+			this.deadline = System.nanoTime() + time * 1000000;
+			this.maximumIterations = maximumIterations;
+			this.firstRound = finalP1 == -1;
+			this.finalP1 = finalP1;
+			this.finalP2 = finalP2;
+			this.lastScores = lastScores;
+		}
+
+		public long timeToExpire() {
+			return Math.max(0, (this.deadline - System.nanoTime()) / 1000000);
+		}
+
+		public double probabilityForNextIteration() {
+			return 1;
+		}
+
+		public int getMaximumNumberOfIterations() {
+			return this.maximumIterations;
+		}
+
+		public boolean isFirstRound() {
+			return this.firstRound;
+		}
+
+		public void quitGame() {
+			this.quit = true;
+		}
+
+		public Double put(String key, Double value) {
+			if(!this.strategy.containsKey(key))
+				throw new IllegalArgumentException("Unknown key " + key);
+			return this.strategy.put(key, value);
+		}
+
+		Double get(String key) {
+			return this.strategy.get(key);
+		}
+
+		public Iterator<String> keyIterator() {
+			return this.strategy.keySet().iterator();
+		}
+
+		public int getFinalP1Node() {
+			return this.finalP1;
+		}
+
+		public int getFinalP2Node() {
+			return this.finalP2;
+		}
+
+		public int getLastRoundSelfScoreAsP1(GameTree t) {
+			return this.lastScores[0];
+		}
+
+		public int getLastRoundSelfScoreAsP2(GameTree t) {
+			return this.lastScores[1];
+		}
+
+		public int getLastRoundOpponentScoreAsP1(GameTree t) {
+			return this.lastScores[2];
+		}
+
+		public int getLastRoundOpponentScoreAsP2(GameTree t) {
+			return this.lastScores[3];
+		}
+	}
+
+	/**
+	 * Returns the keys of the requests of a tree: the labels of the moves
+	 * of each information set, grouped as in the validation set.
+	 * @param tree the game tree.
+	 * @return the keys, in order.
+	 */
+	static List<String> keysOf(CompactGameTree tree) {
+		Set<String> keys = new LinkedHashSet<String>();
+		for(int p = 0; p < tree.size(); p++) {
+			int first = tree.firstChild(p);
+			int count = tree.childCount(p);
+			if(count == 0 || tree.isNature(p) || keys.contains(tree.labelOf(tree.labelId(first))))
+				continue;
+			for(int c = first; c < first + count; c++)
+				keys.add(tree.labelOf(tree.labelId(c)));
+		}
+		return new ArrayList<String>(keys);
+	}
+
+	private Latency latencyOf(String name) {
+		synchronized(this.latencies) {
+			Latency l = this.latencies.get(name);
+			if(l == null) {
+				l = new Latency();
+				this.latencies.put(name, l);
+			}
+			return l;
+		}
+	}
+
+	/**
+	 * Creates a strategy that can be played locally.
+	 * @param name the full name of the class of the strategy.
+	 * @return a new instance of the strategy.
+	 * @throws ReflectiveOperationException if the class cannot be instantiated.
+	 * @throws IllegalArgumentException if the strategy cannot be played locally.
+	 */
+	static Strategy newStrategy(String name) throws ReflectiveOperationException {
+		Object s = Class.forName(name).getDeclaredConstructor().newInstance();
+		if(!(s instanceof Strategy) || !(s instanceof LocalPlayer))
+			throw new IllegalArgumentException(name + " does not implement LocalPlayer");
+		return (Strategy) s;
+	}
+
+	/**
+	 * Plays a match between two strategies.
+	 * @param first the full name of the class of the first strategy.
+	 * @param second the full name of the class of the second strategy.
+	 * @param seed the seed of the sampling of the moves.
+	 * @return the result of the match.
+	 * @throws Exception if a strategy cannot be created or fails.
+	 */
+	public MatchResult play(String first, String second, long seed) throws Exception {
+		//Each match has its own tree, as strategies may move its current node
+		GameTree tree = GameTree.fromSource(this.game);
+		CompactGameTree t = CompactGameTree.of(tree);
+		List<String> keys = keysOf(t);
+		Strategy[] strategies = { newStrategy(first), newStrategy(second) };
+		Latency[] latency = { latencyOf(first), latencyOf(second) };
+		SplittableRandom random = new SplittableRandom(seed);
+		int[][] finals = { { -1, -1 }, { -1, -1 } };	// by strategy, as P1 and as P2
+		int[][] scores = new int[2][4];
+		long[] total = new long[2];
+		int played = 0;
+		try {
+			for(Strategy s : strategies) {
+				s.tree = tree;
+				((LocalPlayer) s).setSeed(random.nextLong());
+			}
+			for(int r = 0; r < this.rounds; r++) {
+				LocalRequest[] requests = new LocalRequest[2];
+				for(int i = 0; i < 2; i++) {
+					requests[i] = new LocalRequest(keys, this.roundTime, this.rounds, finals[i][0], finals[i][1], scores[i]);
+					//An AnytimeStrategy that misses its deadline still fills the request in time, uniformly
+					AnytimeStrategy anytime = strategies[i] instanceof AnytimeStrategy ? (AnytimeStrategy) strategies[i] : null;
+					int hits = anytime == null ? 0 : anytime.getDeadlineHits();
+					long start = System.nanoTime();
+					boolean filled = ((LocalPlayer) strategies[i]).fillStrategy(requests[i]);
+					boolean late = requests[i].timeToExpire() == 0 || (anytime != null && anytime.getDeadlineHits() > hits);
+					latency[i].add(System.nanoTime() - start, late);
+					if(!filled || requests[i].quit)
+						throw new IllegalStateException((i == 0 ? first : second) + " quit the game in round " + r);
+					validate(t, requests[i], latency[i]);
+				}
+				//Each strategy plays once as player 1 and once as player 2
+				int g1 = sample(t, requests[0], requests[1], random);
+				int g2 = sample(t, requests[1], requests[0], random);
+				total[0] += t.payoffP1(g1) + t.payoffP2(g2);
+				total[1] += t.payoffP2(g1) + t.payoffP1(g2);
+				finals[0] = new int[] { t.indexAt(g1), t.indexAt(g2) };
+				finals[1] = new int[] { t.indexAt(g2), t.indexAt(g1) };
+				scores[0] = new int[] { t.payoffP1(g1), t.payoffP2(g2), t.payoffP2(g1), t.payoffP1(g2) };
+				scores[1] = new int[] { t.payoffP1(g2), t.payoffP2(g1), t.payoffP2(g2), t.payoffP1(g1) };
+				played++;
+			}
+		} finally {
+			for(Strategy s : strategies)
+				((LocalPlayer) s).endGame();
+		}
+		return new MatchResult(first, second, total[0], total[1], played);
+	}
+
+	/*
+	 * Replaces by a uniform strategy the information sets whose
+	 * probabilities are not a distribution.
+	 */
+	private static void validate(CompactGameTree t, LocalRequest request, Latency latency) {
+		Iterator<Integer> sizes = t.getValidationSet().iterator();
+		Iterator<String> keys = request.keyIterator();
+		while(sizes.hasNext()) {
+			int n = sizes.next();
+			String[] group = new String[n];
+			double sum = 0;
+			boolean valid = true;
+			for(int i = 0; i < n && keys.hasNext(); i++) {
+				group[i] = keys.next();
+				Double v = request.get(group[i]);
+				valid &= v != null && v >= 0;
+				sum += v == null ? 0 : v;
+			}
+			if(!valid || Math.abs(sum - 1) > 1e-6) {
+				latency.invalid();
+				for(String k : group)
+					request.put(k, 1.0 / n);
+			}
+		}
+	}
+
+	/*
+	 * Plays the game once, and returns the position of the terminal node reached.
+	 */
+	private static int sample(CompactGameTree t, LocalRequest player1, LocalRequest player2, SplittableRandom random) {
+		int p = 0;
+		while(!t.isTerminal(p)) {
+			int first = t.firstChild(p);
+			int count = t.childCount(p);
+			LocalRequest mover = t.isPlayer1(p) ? player1 : player2;
+			double r = random.nextDouble();
+			int c = first;
+			for(double sum = probability(t, c, mover); sum <= r && c < first + count - 1; sum += probability(t, c, mover))
+				c++;
+			p = c;
+		}
+		return p;
+	}
+
+	private static double probability(CompactGameTree t, int c, LocalRequest mover) {
+		if(t.isNature(t.parent(c)))
+			return t.weight(c);
+		Double v = mover.get(t.labelOf(t.labelId(c)));
+		return v == null ? 0 : v.doubleValue();
+	}
+
+	/**
+	 * Plays a round-robin tournament, a match for each pair of strategies.
+	 * @param names the full names of the classes of the strategies.
+	 * @param threads the number of matches played at the same time.
+	 * @param seed the seed of the sampling of the moves.
+	 * @return the results of the matches.
+	 * @throws InterruptedException if interrupted while waiting for the matches.
+	 */
+	public List<MatchResult> roundRobin(List<String> names, int threads, long seed) throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+		SplittableRandom seeds = new SplittableRandom(seed);
+		List<Future<MatchResult>> matches = new ArrayList<Future<MatchResult>>();
+		for(int i = 0; i < names.size(); i++) {
+			for(int j = i + 1; j < names.size(); j++) {
+				final String first = names.get(i);
+				final String second = names.get(j);
+				final long s = seeds.nextLong();
+				matches.add(pool.submit(() -> play(first, second, s)));
+			}
+		}
+		List<MatchResult> results = new ArrayList<MatchResult>();
+		try {
+			for(Future<MatchResult> m : matches) {
+				try {
+					results.add(m.get());
+				} catch (ExecutionException e) {
+					System.err.println("Match failed: " + e.getCause());
+				}
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		return results;
+	}
+
+	/**
+	 * Prints the time each strategy took to fill its requests.
+	 */
+	public void printLatencies() {
+		synchronized(this.latencies) {
+			for(Map.Entry<String, Latency> e : this.latencies.entrySet())
+				System.out.println(e.getKey() + ": " + e.getValue());
+		}
+	}
+
+	/**
+	 * Reads the strategies of a configuration file, one full class name
+	 * per line.
+	 * @param file the path of the file (e.g. Strategy.conf).
+	 * @return the class names.
+	 * @throws IOException if the file cannot be read.
+	 */
+	public static List<String> readConfiguration(String file) throws IOException {
+		List<String> names = new ArrayList<String>();
+		BufferedReader in = new BufferedReader(new FileReader(file));
+		try {
+			String line;
+			while((line = in.readLine()) != null) {
+				line = line.trim();
+				if(!line.isEmpty())
+					names.add(line);
+			}
+		} finally {
+			in.close();
+		}
+		return names;
+	}
+
+	public static void main(String[] args) throws Exception {
+		String conf = "Strategy.conf";
+		MatrixGameSource game = MatrixGameSource.prisonersDilemma();
+		int rounds = DEFAULT_ROUNDS;
+		long time = DEFAULT_ROUND_TIME;
+		int threads = Runtime.getRuntime().availableProcessors();
+		long seed = System.nanoTime();
+		for(int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			switch(args[i]) {
+			case "-conf": conf = value; break;
+			case "-game":
+				game = MatrixGameSource.named(value);
+				if(game == null)
+					game = MatrixGameSource.fromFile(value);
+				break;
+			case "-rounds": rounds = Integer.parseInt(value); break;
+			case "-time": time = Long.parseLong(value); break;
+			case "-threads": threads = Integer.parseInt(value); break;
+			case "-seed": seed = Long.parseLong(value); break;
+			default:
+				System.err.println("Unknown option " + args[i]);
+				System.err.println("Usage: java play.LocalTournament [-conf file] [-game name|file] [-rounds n] [-time ms] [-threads n] [-seed n]");
+				return;
+			}
+		}
+
+		List<String> names = new ArrayList<String>();
+		for(String name : readConfiguration(conf)) {
+			try {
+				Strategy s = newStrategy(name);
+				if(s instanceof AnytimeStrategy && time <= ((AnytimeStrategy) s).getSafetyMargin())
+					System.err.println("Warning: " + name + " keeps " + ((AnytimeStrategy) s).getSafetyMargin()
+							+ " ms to deliver its strategy, which leaves no time to compute it in " + time + " ms rounds.");
+				names.add(name);
+			} catch (ReflectiveOperationException | IllegalArgumentException e) {
+				System.err.println("Skipping " + name + ": " + e);
+			}
+		}
+
+		LocalTournament tournament = new LocalTournament(game, rounds, time);
+		List<MatchResult> results = tournament.roundRobin(names, threads, seed);
+		System.out.println("Game " + game.getName() + ", " + rounds + " rounds per match, seed " + seed);
+		Map<String, Long> standings = new LinkedHashMap<String, Long>();
+		for(String name : names)
+			standings.put(name, 0L);
+		for(MatchResult r : results) {
+			System.out.println(r);
+			standings.put(r.first, standings.get(r.first) + r.scoreFirst);
+			standings.put(r.second, standings.get(r.second) + r.scoreSecond);
+		}
+		System.out.println("Total scores:");
+		for(Map.Entry<String, Long> e : standings.entrySet())
+			System.out.println(e.getKey() + ": " + e.getValue());
+		System.out.println("Decision latency:");
+		tournament.printLatencies();
+	}
+}
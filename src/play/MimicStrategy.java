@@ -1,14 +1,14 @@
 package play;
 
-import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import gametree.GameNode;
-import gametree.GameNodeDoesNotExistException;
 import play.exception.InvalidStrategyException;
 
 /**********************************************************************************
@@ -17,42 +17,52 @@ import play.exception.InvalidStrategyException;
  * previous move.
  *
  **********************************************************************************/
-public class MimicStrategy extends Strategy {
+public class MimicStrategy extends Strategy implements LocalPlayer {
 
-	private List<GameNode> getReversePath(GameNode current) {		
-		try {
-			GameNode n = current.getAncestor();
-			List<GameNode> l =  getReversePath(n);
-			l.add(current);
-			return l;
-		} catch (GameNodeDoesNotExistException e) {
-			List<GameNode> l = new ArrayList<GameNode>();
-			l.add(current);
-			return l;
-		}
+	private static final int SPECULATED_OUTCOMES = 32;	// most likely outcomes of each role considered
+	private static final int SPECULATED_PAIRS = 256;	// responses precomputed between rounds
+
+	private SimplexSampler sampler = new SimplexSampler();
+	private long responseSeed;	// seeds the responses to the outcomes of the round in play
+	private GameNode finalP1 = null;
+	private GameNode finalP2 = null;
+	private Speculation<Map<String, Double>> speculation = null;
+
+	/*
+	 * Fills path with the indexes of the nodes from the root to current 
+	 * (see GameTree.pathToRoot), replacing it by a larger array if needed.
+	 */
+	int[] getReversePath(GameNode current, int[] path) {
+		int length = tree.depth(current.getValue()) + 1;
+		if(path.length < length)
+			path = new int[Math.max(length, 2 * path.length)];
+		tree.pathToRoot(current.getValue(), path);
+		return path;
 	}
 	
-	private void cumputeStrategy(List<GameNode> listP1, 
-			List<GameNode> listP2,
-			PlayStrategy myStrategy,
-			SecureRandom random) throws GameNodeDoesNotExistException {
+	void cumputeStrategy(int[] pathP1, int lengthP1,
+			int[] pathP2, int lengthP2,
+			Map<String, Double> myStrategy,
+			SimplexSampler sampler) {
 	
 		Set<String> oponentMoves = new HashSet<String>();
 		
 		//When we played as Player1 we are going to check what were the moves
-		//of our opponent as player2.
-		for(GameNode n: listP1) {
-			if(n.isNature() || n.isRoot()) continue;
-			if(n.getAncestor().isPlayer2()) {
+		//of our opponent as player2 (position 0 of the path is the root).
+		for(int d = 1; d < lengthP1; d++) {
+			GameNode n = tree.getNodeByIndex(pathP1[d]);
+			if(n.isNature()) continue;
+			if(tree.getNodeByIndex(pathP1[d-1]).isPlayer2()) {
 				oponentMoves.add(n.getLabel());
 			}
 		}
 		
 		//When we played as Player2 we are going to check what were the moves
 		//of our opponent as player1.
-		for(GameNode n: listP2) {
-			if(n.isNature() || n.isRoot()) continue;
-			if(n.getAncestor().isPlayer1()) {
+		for(int d = 1; d < lengthP2; d++) {
+			GameNode n = tree.getNodeByIndex(pathP2[d]);
+			if(n.isNature()) continue;
+			if(tree.getNodeByIndex(pathP2[d-1]).isPlayer1()) {
 				oponentMoves.add(n.getLabel());
 			}
 		}
@@ -60,15 +70,13 @@ public class MimicStrategy extends Strategy {
 		
 		//We now set our strategy to have a probability of 1.0 for the moves used
 		//by our adversary in the previous round and zero for the remaining ones.
-		Iterator<String> moves = myStrategy.keyIterator();
+		Iterator<String> moves = myStrategy.keySet().iterator();
 		while(moves.hasNext()) {
 			String k = moves.next();
 			if(oponentMoves.contains(k)) {
 				myStrategy.put(k, new Double(1));
-				System.err.println("Setting " + k + " to prob 1.0");
 			} else {
 				myStrategy.put(k, new Double(0));
-				System.err.println("Setting " + k + " to prob 0.0");
 			}
 				
 		}
@@ -78,30 +86,24 @@ public class MimicStrategy extends Strategy {
 		//of the game for which we could not infer the moves of the adversary (because
 		//none of the games in the previous round pass through those paths)
 		Iterator<Integer> validationSetIte = tree.getValidationSet().iterator();
-		moves = myStrategy.keyIterator();
+		String[] keys = myStrategy.keySet().toArray(new String[myStrategy.size()]);
+		int next = 0;
 		while(validationSetIte.hasNext()) {
 			int possibleMoves = validationSetIte.next().intValue();
 			String[] labels = new String[possibleMoves];
 			double[] values = new double[possibleMoves];
 			double sum = 0;
 			for(int i = 0; i < possibleMoves; i++) {		
-				labels[i] = moves.next();
-				values[i] = ((Double) myStrategy.get(labels[i])).doubleValue();
+				labels[i] = keys[next++];
+				values[i] = myStrategy.get(labels[i]).doubleValue();
 				sum += values[i];
 			}
 			if(sum != 1) { //In the previous game we could not infer what the adversary played here
 				//Random move on this validation set
-				sum = 0;
-				for(int i = 0; i < values.length - 1; i++) {
-					values[i] = random.nextDouble();
-					while(sum + values[i] >= 1) values[i] = random.nextDouble();
-					sum = sum + values[i];
-				}
-				values[values.length-1] = ((double) 1) - sum;
+				sampler.uniform(values);
 				
 				for(int i = 0; i < possibleMoves; i++) {
 					myStrategy.put(labels[i], values[i]);
-					System.err.println("Unexplored path: Setting " + labels[i] + " to prob " + values[i]);
 				}
 			}
 			
@@ -110,82 +112,148 @@ public class MimicStrategy extends Strategy {
 	}
 	
 
-	@Override
-	public void execute() throws InterruptedException {
-
-		SecureRandom random = new SecureRandom();
-
-		while(!this.isTreeKnown()) {
-			System.err.println("Waiting for game tree to become available.");
-			Thread.sleep(1000);
+	/*
+	 * Computes the response to the outcome (finalP1, finalP2) of the previous
+	 * round, with its own paths and sampler so that responses can be speculated
+	 * in parallel. The sampler is seeded by the outcome, so that the response
+	 * is the same whether it was speculated or not.
+	 */
+	private Map<String, Double> respond(int finalP1, int finalP2, String[] keys, long seed) {
+		SimplexSampler sampler = new SimplexSampler(seed ^ ((long) finalP1 << 32 | (finalP2 & 0xFFFFFFFFL)));
+		GameNode nodeP1 = tree.getNodeByIndex(finalP1);
+		GameNode nodeP2 = tree.getNodeByIndex(finalP2);
+		Map<String, Double> strategy = new LinkedHashMap<String, Double>();
+		for(String k : keys)
+			strategy.put(k, 0.0);
+		cumputeStrategy(getReversePath(nodeP1, new int[16]), tree.depth(finalP1) + 1,
+				getReversePath(nodeP2, new int[16]), tree.depth(finalP2) + 1, strategy, sampler);
+		return strategy;
+	}
+	
+	/* (non-Javadoc)
+	 * @see play.LocalPlayer#fillStrategy(play.PlayStrategyInterface)
+	 */
+	public boolean fillStrategy(PlayStrategyInterface myStrategy) throws InterruptedException {
+		if(myStrategy.getFinalP1Node() != -1) {
+			finalP1 = this.tree.getNodeByIndex(myStrategy.getFinalP1Node());
+			if(finalP1 != null)
+				System.out.println("Terminal node in last round as P1: " + finalP1);
 		}
 
-		GameNode finalP1 = null;
-		GameNode finalP2 = null;
-				
-		while(true) {
+		if(myStrategy.getFinalP2Node() != -1) {
+			finalP2 = this.tree.getNodeByIndex(myStrategy.getFinalP2Node());
+			if(finalP2 != null)
+				System.out.println("Terminal node in last round as P2: " + finalP2);
+		}
 
-			PlayStrategy myStrategy = this.getStrategyRequest();
-			if(myStrategy == null) //Game was terminated by an outside event
-				break;	
-			boolean playComplete = false;
-			
-			while(! playComplete ) {
-				if(myStrategy.getFinalP1Node() != -1) {
-					finalP1 = this.tree.getNodeByIndex(myStrategy.getFinalP1Node());
-					if(finalP1 != null)
-						System.out.println("Terminal node in last round as P1: " + finalP1);
-				}
+		final String[] keys = keysOf(myStrategy);
+		Map<String, Double> delivered = new LinkedHashMap<String, Double>();
+		Iterator<Integer> iterator = tree.getValidationSet().iterator();
+		int next = 0;
 
-				if(myStrategy.getFinalP2Node() != -1) {
-					finalP2 = this.tree.getNodeByIndex(myStrategy.getFinalP2Node());
-					if(finalP2 != null)
-						System.out.println("Terminal node in last round as P2: " + finalP2);
-				}
+		if(finalP1 == null || finalP2 == null) {
+			//This is the first round so we use a random strategy.
+			while(iterator.hasNext()) {
+				double[] moves = new double[iterator.next()];
+				this.sampler.uniform(moves);
 
-				Iterator<Integer> iterator = tree.getValidationSet().iterator();
-				Iterator<String> keys = myStrategy.keyIterator();
-
-				if(finalP1 == null || finalP2 == null) {
-					//This is the first round so we use a random strategy.
-					while(iterator.hasNext()) {
-						double[] moves = new double[iterator.next()];
-						double sum = 0;
-						for(int i = 0; i < moves.length - 1; i++) {
-							moves[i] = random.nextDouble();
-							while(sum + moves[i] >= 1) moves[i] = random.nextDouble();
-							sum = sum + moves[i];
-						}
-						moves[moves.length-1] = ((double) 1) - sum;
-
-						for(int i = 0; i < moves.length; i++) {
-							if(!keys.hasNext()) {
-								System.err.println("PANIC: Strategy structure does not match the game.");
-								return;
-							}
-							myStrategy.put(keys.next(), moves[i]);
-						}
-					} 
-				} else {
-					//Lets mimic our adversary strategy (at least what we can infer)
-					List<GameNode> listP1 = getReversePath(finalP1);
-					List<GameNode> listP2 = getReversePath(finalP2);
-					
-					try { cumputeStrategy(listP1, listP2, myStrategy, random); }
-					catch( GameNodeDoesNotExistException e ) {
+				for(int i = 0; i < moves.length; i++) {
+					if(next == keys.length) {
 						System.err.println("PANIC: Strategy structure does not match the game.");
+						return false;
 					}
+					myStrategy.put(keys[next], moves[i]);
+					delivered.put(keys[next++], moves[i]);
 				}
+			} 
+		} else {
+			//Lets mimic our adversary strategy (at least what we can infer)
+			Map<String, Double> response = speculation().take(finalP1.getValue(), finalP2.getValue());
+			if(response == null)
+				response = respond(finalP1.getValue(), finalP2.getValue(), keys, this.responseSeed);
+			for(Map.Entry<String, Double> e : response.entrySet()) {
+				myStrategy.put(e.getKey(), e.getValue());
+				System.err.println("Setting " + e.getKey() + " to prob " + e.getValue());
+			}
+			delivered = response;
+		}
+		
+		//The next outcome is reached by the strategy we are delivering
+		final long seed = this.sampler.nextSeed();
+		this.responseSeed = seed;
+		speculation().start(Speculation.likelyOutcomes(tree, delivered, true, SPECULATED_OUTCOMES),
+				Speculation.likelyOutcomes(tree, delivered, false, SPECULATED_OUTCOMES),
+				SPECULATED_PAIRS, (f1, f2) -> respond(f1, f2, keys, seed));
+		return true;
+	}
+	
+	/*
+	 * Our response depends only on the outcome of the previous round, so it is
+	 * computed for the likely outcomes while the opponent is still playing.
+	 */
+	private Speculation<Map<String, Double>> speculation() {
+		if(this.speculation == null)
+			this.speculation = new Speculation<Map<String, Double>>();
+		return this.speculation;
+	}
+	
+	/* (non-Javadoc)
+	 * @see play.LocalPlayer#endGame()
+	 */
+	public void endGame() {
+		if(this.speculation != null) {
+			this.speculation.shutdown();
+			System.out.println("Speculated responses used in " + this.speculation.getHits() + " of "
+					+ (this.speculation.getHits() + this.speculation.getMisses()) + " rounds");
+			this.speculation = null;
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see play.LocalPlayer#setSeed(long)
+	 */
+	public void setSeed(long seed) {
+		this.sampler = new SimplexSampler(seed);
+	}
+	
+	@Override
+	public void execute() throws InterruptedException {
 
-				try{
-					this.provideStrategy(myStrategy);
-					playComplete = true;
-				} catch (InvalidStrategyException e) {
-					System.err.println("Invalid strategy: " + e.getMessage());;
-					e.printStackTrace(System.err);
-				} 
+		while(!TreeAvailability.await(this, 1000))
+			System.err.println("Waiting for game tree to become available.");
+
+		try {
+			while(true) {
+
+				PlayStrategy myStrategy = this.getStrategyRequest();
+				if(myStrategy == null) //Game was terminated by an outside event
+					break;	
+				boolean playComplete = false;
+				
+				while(! playComplete ) {
+					if(!fillStrategy(myStrategy))
+						return;
+
+					try{
+						this.provideStrategy(myStrategy);
+						playComplete = true;
+					} catch (InvalidStrategyException e) {
+						System.err.println("Invalid strategy: " + e.getMessage());;
+						e.printStackTrace(System.err);
+					} 
+				}
 			}
+		} finally {
+			endGame();
 		}
 
 	}
+	
+	private static String[] keysOf(PlayStrategyInterface myStrategy) {
+		List<String> keys = new ArrayList<String>();
+		Iterator<String> ite = myStrategy.keyIterator();
+		while(ite.hasNext())
+			keys.add(ite.next());
+		return keys.toArray(new String[keys.size()]);
+	}
 }
@@ -0,0 +1,319 @@
+package play;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import gametree.CompactGameTree;
+import gametree.FlatGameTree;
+import gametree.GameTree;
+import gametree.InformationSetIndex;
+
+/**
+ * Monte Carlo counterfactual regret minimization with external sampling,
+ * for trees too large for the full traversals of CfrSolver.
+ *
+ * Each iteration traverses the tree once for each player: at the nodes of
+ * that player every action is explored, while at the nodes of the opponent
+ * a single action is sampled from the current strategy and at nature nodes
+ * a single child is sampled by its weight. An iteration thus visits a
+ * number of nodes that grows with the branching of one player only.
+ *
+ * One sampler runs per core, each with its own SplittableRandom. Samplers
+ * accumulate their updates in private arrays and merge them every
+ * MERGE_INTERVAL iterations into the shared regret and average strategy
+ * tables, locking only the stripe of each information set they touched.
+ * Samplers read the shared regrets without locking, so they may play a
+ * strategy a few merges old, which sampling tolerates.
+ */
+public class MonteCarloCfrSolver {
+
+	private static final int STRIPES = 64; // a power of 2
+	private static final int MERGE_INTERVAL = 32;
+
+	private final FlatGameTree tree;
+	private final InformationSetIndex sets;
+	private final double[] regret;	// by slot
+	private final double[] average;	// by slot
+	private final Object[] stripes;
+	private final int samplers;
+	private SplittableRandom random;
+
+	private long iterations = 0;
+	private double lastThroughput = 0;	// iterations per second in the last call to solve
+
+	public MonteCarloCfrSolver(FlatGameTree tree) {
+		this(tree, Runtime.getRuntime().availableProcessors(), System.nanoTime());
+	}
+
+	/**
+	 * @param tree the tree.
+	 * @param samplers number of sampling threads.
+	 * @param seed seed of the random generators of the samplers.
+	 */
+	public MonteCarloCfrSolver(FlatGameTree tree, int samplers, long seed) {
+		this.tree = tree;
+		this.sets = InformationSetIndex.of(tree);
+		this.regret = new double[this.sets.numberOfSlots()];
+		this.average = new double[this.sets.numberOfSlots()];
+		this.stripes = new Object[STRIPES];
+		for(int i = 0; i < STRIPES; i++)
+			this.stripes[i] = new Object();
+		this.samplers = Math.max(1, samplers);
+		this.random = new SplittableRandom(seed);
+	}
+
+	/**
+	 * Returns the solver of a game tree, created once over its
+	 * CompactGameTree and memoized on the tree (see GameTree.getAttachment),
+	 * so that every round continues refining the same strategy.
+	 * @param tree the game tree.
+	 * @return the shared solver of the tree.
+	 */
+	public static MonteCarloCfrSolver fromTree(GameTree tree) {
+		return tree.getAttachment(MonteCarloCfrSolver.class, t -> new MonteCarloCfrSolver(CompactGameTree.of(t)));
+	}
+
+	/**
+	 * @return the information sets of the tree.
+	 */
+	public InformationSetIndex getInformationSets() {
+		return this.sets;
+	}
+
+	/**
+	 * @return the number of iterations run so far, by all samplers.
+	 */
+	public synchronized long getIterations() {
+		return this.iterations;
+	}
+
+	/**
+	 * @return the number of iterations per second, by all samplers
+	 * together, during the last call to solve. This is the figure to size
+	 * the time budget of a round with.
+	 */
+	public synchronized double getIterationsPerSecond() {
+		return this.lastThroughput;
+	}
+
+	/**
+	 * Runs the samplers until the budget is spent.
+	 * @param budget time available, in milliseconds.
+	 * @return the number of iterations run.
+	 */
+	public synchronized long solve(long budget) {
+		long start = System.nanoTime();
+		long deadline = start + budget * 1000000;
+		Sampler[] workers = new Sampler[this.samplers];
+		Thread[] threads = new Thread[this.samplers];
+		for(int i = 0; i < this.samplers; i++) {
+			workers[i] = new Sampler(this.random.split(), deadline);
+			threads[i] = new Thread(workers[i], "mccfr-sampler-" + i);
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+		long count = 0;
+		boolean interrupted = false;
+		for(int i = 0; i < this.samplers; i++) {
+			while(threads[i].isAlive()) {
+				try {
+					threads[i].join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+					for(Sampler w : workers)
+						w.stopped = true; //Samplers stop after their current iteration
+				}
+			}
+			count += workers[i].count;
+		}
+		if(interrupted)
+			Thread.currentThread().interrupt();
+		long elapsed = System.nanoTime() - start;
+		this.iterations += count;
+		this.lastThroughput = elapsed > 0 ? count * 1e9 / elapsed : 0;
+		return count;
+	}
+
+	/**
+	 * Runs the samplers within the time left in the current round.
+	 * @param request the strategy requested in the current round.
+	 * @param margin time kept to deliver the strategy, in milliseconds.
+	 * @return the number of iterations run.
+	 */
+	public long solve(PlayStrategyInterface request, long margin) {
+		return solve(Math.max(0, request.timeToExpire() - margin));
+	}
+
+	private class Sampler implements Runnable {
+		private final SplittableRandom random;
+		private final long deadline;
+		private final double[] regretDelta;
+		private final double[] averageDelta;
+		private final double[] strategy;	// by slot, recomputed when a set is visited
+		private final double[] value;		// by position, values of the explored children
+		private final boolean[] touched;	// by set, whether it has updates to merge
+		private int[] touchedSets = new int[16];
+		private int touchedCount = 0;
+		long count = 0;
+		volatile boolean stopped = false;
+
+		Sampler(SplittableRandom random, long deadline) {
+			this.random = random;
+			this.deadline = deadline;
+			int slots = sets.numberOfSlots();
+			this.regretDelta = new double[slots];
+			this.averageDelta = new double[slots];
+			this.strategy = new double[slots];
+			this.value = new double[tree.size()];
+			this.touched = new boolean[sets.numberOfSets()];
+		}
+
+		/*
+		 * The deadline is checked after every iteration, and the updates
+		 * of the iterations since the last merge are merged on exit.
+		 */
+		@Override
+		public void run() {
+			int pending = 0;
+			while(!this.stopped && System.nanoTime() - this.deadline < 0) {
+				traverse(0, true);
+				traverse(0, false);
+				this.count++;
+				if(++pending == MERGE_INTERVAL) {
+					merge();
+					pending = 0;
+				}
+			}
+			if(pending > 0)
+				merge();
+		}
+
+		/*
+		 * Returns the sampled value, for the traversing player, of the
+		 * subtree of p.
+		 */
+		private double traverse(int p, boolean player1) {
+			FlatGameTree t = tree;
+			int first = t.firstChild(p);
+			int n = t.childCount(p);
+			if(n == 0)
+				return player1 ? t.payoffP1(p) : t.payoffP2(p);
+			if(t.isNature(p)) {
+				double r = this.random.nextDouble();
+				int c = first;
+				for(double sum = t.weight(c); sum <= r && c < first + n - 1; sum += t.weight(c))
+					c++;
+				return traverse(c, player1);
+			}
+			int set = sets.setOf(p);
+			int firstSlot = sets.firstSlot(set);
+			int lastSlot = firstSlot + n;
+			match(firstSlot, lastSlot);
+			touch(set);
+			if(sets.isPlayer1(set) == player1) {
+				double v = 0;
+				for(int c = first; c < first + n; c++) {
+					this.value[c] = traverse(c, player1);
+					v += this.strategy[sets.slotOf(c)] * this.value[c];
+				}
+				for(int c = first; c < first + n; c++)
+					this.regretDelta[sets.slotOf(c)] += this.value[c] - v;
+				return v;
+			}
+			for(int k = firstSlot; k < lastSlot; k++)
+				this.averageDelta[k] += this.strategy[k];
+			double r = this.random.nextDouble();
+			int c = first;
+			for(double sum = this.strategy[sets.slotOf(c)]; sum <= r && c < first + n - 1; sum += this.strategy[sets.slotOf(c)])
+				c++;
+			return traverse(c, player1);
+		}
+
+		/*
+		 * Regret matching over the shared regrets of one set.
+		 */
+		private void match(int firstSlot, int lastSlot) {
+			double total = 0;
+			for(int k = firstSlot; k < lastSlot; k++)
+				total += Math.max(0, regret[k]);
+			for(int k = firstSlot; k < lastSlot; k++)
+				this.strategy[k] = total > 0 ? Math.max(0, regret[k]) / total : 1.0 / (lastSlot - firstSlot);
+		}
+
+		private void touch(int set) {
+			if(this.touched[set])
+				return;
+			this.touched[set] = true;
+			if(this.touchedCount == this.touchedSets.length)
+				this.touchedSets = Arrays.copyOf(this.touchedSets, this.touchedCount * 2);
+			this.touchedSets[this.touchedCount++] = set;
+		}
+
+		private void merge() {
+			for(int i = 0; i < this.touchedCount; i++) {
+				int set = this.touchedSets[i];
+				int firstSlot = sets.firstSlot(set);
+				int lastSlot = firstSlot + sets.numberOfActions(set);
+				synchronized(stripes[set & (STRIPES - 1)]) {
+					for(int k = firstSlot; k < lastSlot; k++) {
+						regret[k] += this.regretDelta[k];
+						average[k] += this.averageDelta[k];
+					}
+				}
+				for(int k = firstSlot; k < lastSlot; k++) {
+					this.regretDelta[k] = 0;
+					this.averageDelta[k] = 0;
+				}
+				this.touched[set] = false;
+			}
+			this.touchedCount = 0;
+		}
+	}
+
+	/**
+	 * @param slot an action slot of the information set index.
+	 * @return the probability of the action in the average strategy.
+	 */
+	public synchronized double getAverageStrategy(int slot) {
+		int s = -1;
+		int low = 0;
+		int high = this.sets.numberOfSets() - 1;
+		while(low <= high) {
+			int middle = (low + high) >>> 1;
+			if(this.sets.firstSlot(middle) <= slot) {
+				s = middle;
+				low = middle + 1;
+			}
+			else
+				high = middle - 1;
+		}
+		return averageOf(s, slot);
+	}
+
+	private double averageOf(int s, int slot) {
+		int firstSlot = this.sets.firstSlot(s);
+		int lastSlot = firstSlot + this.sets.numberOfActions(s);
+		double total = 0;
+		for(int k = firstSlot; k < lastSlot; k++)
+			total += this.average[k];
+		return total > 0 ? this.average[slot] / total : 1.0 / (lastSlot - firstSlot);
+	}
+
+	/**
+	 * Writes the average strategy into a strategy request.
+	 * @param keys the keys of the strategy request.
+	 * @param myStrategy the strategy request.
+	 */
+	public synchronized void write(StrategyKeys keys, PlayStrategyInterface myStrategy) {
+		double[] profile = keys.newProfile();
+		for(int s = 0; s < this.sets.numberOfSets(); s++) {
+			int firstSlot = this.sets.firstSlot(s);
+			for(int k = firstSlot; k < firstSlot + this.sets.numberOfActions(s); k++) {
+				int id = keys.getSymbolTable().idOf(this.tree.labelOf(this.sets.labelId(k)));
+				if(id >= 0 && id < profile.length)
+					profile[id] = averageOf(s, k);
+			}
+		}
+		keys.write(profile, myStrategy);
+	}
+}
@@ -1,19 +1,25 @@
 package play;
 
-import java.util.Iterator;
+import java.util.List;
 
+import gametree.CompactGameTree;
 import gametree.GameNode;
 import gametree.GameNodeDoesNotExistException;
 import play.exception.InvalidStrategyException;
 
 public class NewStrategy  extends Strategy {
 
+	private static final long SAFETY_MARGIN = 500; // milliseconds kept to deliver the strategy
+	private static final int SUPPORT_ENUMERATION_LIMIT = 10; // larger games are solved by Lemke-Howson
+	private static final int FULL_TRAVERSAL_LIMIT = 1 << 20; // nodes; larger trees are solved by Monte Carlo CFR
+
+	private NormalFormGame lastGame = null;
+	private Equilibrium equilibrium = null;
+
 	@Override
 	public void execute() throws InterruptedException {
-		while(!this.isTreeKnown()) {
+		while(!TreeAvailability.await(this, 1000))
 			System.err.println("Waiting for game tree to become available.");
-			Thread.sleep(1000);
-		}
 		while(true) {
 			PlayStrategy myStrategy = this.getStrategyRequest();
 			if(myStrategy == null) //Game was terminated by an outside event
@@ -50,43 +56,61 @@ public class NewStrategy  extends Strategy {
 						System.out.println(" -> (Opp) " + finalP2.getPayoffP1() + " : (Me) "+ finalP2.getPayoffP2());
 					}
 				}
-				// Normal Form Games only!
-				GameNode rootNode = tree.getRootNode();
-				int n1 = rootNode.numberOfChildren();
-				int n2 = rootNode.getChildren().next().numberOfChildren();
-				String[] labelsP1 = new String[n1];
-				String[] labelsP2 = new String[n2];
-				int[][] U1 = new int[n1][n2];
-				int[][] U2 = new int[n1][n2];
-				Iterator<GameNode> childrenNodes1 = rootNode.getChildren();
-				GameNode childNode1;
-				GameNode childNode2;
-				int i = 0;
-				int j = 0;
-				while(childrenNodes1.hasNext()) {
-					childNode1 = childrenNodes1.next();		
-					labelsP1[i] = childNode1.getLabel();	
-					j = 0;
-					Iterator<GameNode> childrenNodes2 = childNode1.getChildren();
-					while(childrenNodes2.hasNext()) {
-						childNode2 = childrenNodes2.next();
-						if (i==0) labelsP2[j] = childNode2.getLabel();
-						U1[i][j] = childNode2.getPayoffP1();
-						U2[i][j] = childNode2.getPayoffP2();
-						j++;
-					}	
-					i++;
+				// The game is extracted from the tree once, and reused in later rounds
+				NormalFormGame game = NormalFormGame.fromTree(tree);
+				if (game == null) {
+					// Other games are played by backward induction if they have perfect information, by CFR otherwise
+					BackwardInduction solver = BackwardInduction.fromTree(tree);
+					if (solver.isPerfectInformation()) {
+						solver.write(StrategyKeys.of(tree, myStrategy), myStrategy);
+						System.out.println("Subgame perfect play, expected payoffs: " + solver.getValueP1(0) + " : " + solver.getValueP2(0));
+					} else if (CompactGameTree.of(tree).size() <= FULL_TRAVERSAL_LIMIT) { // imperfect information: refine the same CFR strategy in every round, with the time left
+						CfrSolver cfr = CfrSolver.fromTree(tree);
+						int iterations = cfr.solve(myStrategy, SAFETY_MARGIN);
+						cfr.write(StrategyKeys.of(tree, myStrategy), myStrategy);
+						System.out.println("CFR average strategy after " + cfr.getIterations() + " iterations (" + iterations + " in this round)");
+					} else { // too large to traverse at every iteration: sample it
+						MonteCarloCfrSolver mccfr = MonteCarloCfrSolver.fromTree(tree);
+						long iterations = mccfr.solve(myStrategy, SAFETY_MARGIN);
+						mccfr.write(StrategyKeys.of(tree, myStrategy), myStrategy);
+						System.out.println("MCCFR average strategy after " + mccfr.getIterations() + " iterations (" + iterations 
+								+ " in this round, " + (long) mccfr.getIterationsPerSecond() + " per second)");
+					}
+				} else {
+					String[] labelsP1 = game.rowLabels;
+					String[] labelsP2 = game.colLabels;
+					if (game != lastGame) {
+						showActions(1,labelsP1);
+						showActions(2,labelsP2);
+						game.showGame();
+						lastGame = game;
+						equilibrium = null;
+					}
+					if (equilibrium == null) {
+						/*
+						 * Solved once per game; if the round ends before an equilibrium is found, the next round tries again 
+						 */
+						if (ZeroSumSolver.isConstantSum(game)) {
+							equilibrium = ZeroSumSolver.solve(game);
+							System.out.println("Constant-sum game, maximin strategies: " + equilibrium);
+						}
+						else if (Math.min(game.nRow, game.nCol) <= SUPPORT_ENUMERATION_LIMIT) {
+							SupportEnumerationSolver solver = new SupportEnumerationSolver(game);
+							List<Equilibrium> equilibria = solver.solve(Math.max(0, myStrategy.timeToExpire() - SAFETY_MARGIN));
+							System.out.println("Equilibria found: " + equilibria.size() + (solver.isComplete() ? "" : " (search interrupted)"));
+							for (Equilibrium e : equilibria) System.out.println("   " + e);
+							if (!equilibria.isEmpty()) equilibrium = equilibria.get(0);
+						}
+						else {
+							equilibrium = new LemkeHowsonSolver(game).solve(myStrategy, SAFETY_MARGIN);
+							System.out.println("Equilibrium found: " + (equilibrium == null ? "none (out of time)" : equilibrium));
+						}
+					}
+					double[] strategyP1 = setStrategy(1,labelsP1,myStrategy);
+					double[] strategyP2 = setStrategy(2,labelsP2,myStrategy);
+					showStrategy(1,strategyP1,labelsP1);
+					showStrategy(2,strategyP2,labelsP2);
 				}
-				showActions(1,labelsP1);
-				showActions(2,labelsP2);
-				showUtility(1,U1);
-				showUtility(2,U2);
-				NormalFormGame game = new NormalFormGame(U1,U2,labelsP1,labelsP2);
-				game.showGame();
-				double[] strategyP1 = setStrategy(1,labelsP1,myStrategy);
-				double[] strategyP2 = setStrategy(2,labelsP2,myStrategy);
-				showStrategy(1,strategyP1,labelsP1);
-				showStrategy(2,strategyP2,labelsP2);			
 				try{
 					this.provideStrategy(myStrategy);
 					playComplete = true;
@@ -100,7 +124,7 @@ public class NewStrategy  extends Strategy {
 	}
 	
 	public String showLabel(String label) {
-		return label.substring(label.lastIndexOf(':')+1);
+		return this.tree.getSymbolTable().shortName(label);
 	}
 	
 	public void showActions(int P, String[] labels) {
@@ -108,26 +132,15 @@ public class NewStrategy  extends Strategy {
 		for (int i = 0; i<labels.length; i++) System.out.println("   " + showLabel(labels[i]));
 	}
 	
-	public void showUtility(int P, int[][] M) {
-		int nLin = M.length;
-		int nCol = M[0].length;
-		System.out.println("Utility Player " + P + ":");
-		for (int i = 0; i<nLin; i++) {
-			for (int j = 0; j<nCol; j++) System.out.print("| " + M[i][j] + " ");
-			System.out.println("|");
-		}
-	}
-	
 	public double[] setStrategy(int P, String[] labels, PlayStrategy myStrategy) {
 		int n = labels.length;
-		double[] strategy = new double[n];
-		for (int i = 0; i<n; i++)  strategy[i] = 0;
-		if (P==1) { // if playing as player 1 then choose first action
-			strategy[0] = 1; 
+		double[] strategy;
+		if (equilibrium != null) { // play the first equilibrium found (the one with the smallest support)
+			strategy = (P==1 ? equilibrium.getRowStrategy() : equilibrium.getColStrategy()).clone();
 		}
-		else { 		// if playing as player 2 then choose first or second action randomly
-			strategy[0] = 0.5;
-			strategy[1] = 0.5;
+		else {						// no equilibrium known yet: play uniformly
+			strategy = new double[n];
+			for (int i = 0; i<n; i++)  strategy[i] = 1.0 / n;
 		}
 		for (int i = 0; i<n; i++) myStrategy.put(labels[i], strategy[i]);
 		return strategy;
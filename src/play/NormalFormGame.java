@@ -1,47 +1,349 @@
 package play;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Iterator;
 
+import gametree.GameNode;
+import gametree.GameNodeDoesNotExistException;
+import gametree.GameTree;
+import gametree.SymbolTable;
+
+/**
+ * Two player game in normal (matrix) form.
+ *
+ * The payoffs of both players are held in flat row-major arrays, where the
+ * payoff of row i and column j is at i*nCol+j, so that the loops over a row
+ * (computations for the row player) walk contiguous memory. For the column
+ * player the same payoffs are also kept transposed (column-major), so that
+ * its loops are contiguous too.
+ */
 public class NormalFormGame {
-	List<String> rowActions; 	// actions of player 1
-	List<String> colActions; 	// actions of player 2
-	int nRow;					// number of actions of player 1
-	int nCol;					// number of actions of player 2
-	boolean[] pRow;				// if pRow[i]==false than action i of player 1 is not considered 
-	boolean[] pCol;				// if pCol[j]==false than action j of player 2 is not considered 
-	double[][] u1;				// utility matrix of player 1 
-	double[][] u2;				// utility matrix of player 2 
+	final String[] rowActions; 	// actions of player 1
+	final String[] colActions; 	// actions of player 2
+	final int nRow;				// number of actions of player 1
+	final int nCol;				// number of actions of player 2
+	final boolean[] pRow;		// if pRow[i]==false than action i of player 1 is not considered 
+	final boolean[] pCol;		// if pCol[j]==false than action j of player 2 is not considered 
+	final double[] u1;			// utility matrix of player 1, row-major: u1[i*nCol+j] 
+	final double[] u2;			// utility matrix of player 2, row-major: u2[i*nCol+j] 
+	final double[] u1t;			// utility matrix of player 1, column-major: u1t[j*nRow+i] 
+	final double[] u2t;			// utility matrix of player 2, column-major: u2t[j*nRow+i] 
+	final String[] rowLabels;	// labels (information set keys) of the actions of player 1
+	final String[] colLabels;	// labels (information set keys) of the actions of player 2
+	
+	/* Attachment key of the game extracted from a tree, and its value for trees that are not normal form games */
+	private static final Object TREE_ATTACHMENT = NormalFormGame.class;
+	private static final Object NOT_NORMAL_FORM = new Object();
 	
 	public NormalFormGame() {
+		this(0, 0, new double[0], new double[0], new String[0], new String[0], new SymbolTable());
+	}
+	
+	/**
+	 * Returns the normal form game represented by a game tree, if the tree
+	 * is a simultaneous move game: the root belongs to player 1, all its 
+	 * children belong to player 2 and offer the same actions, and all their
+	 * children are terminal. The game is extracted once and memoized on the
+	 * tree (see GameTree.getAttachment), so later calls, in later rounds 
+	 * or later games with the same tree, return the same instance. That
+	 * instance is shared and must not be modified.
+	 * @param tree the game tree.
+	 * @return the normal form game, null if the tree does not represent one.
+	 */
+	public static NormalFormGame fromTree(GameTree tree) {
+		Object game = tree.getAttachment(TREE_ATTACHMENT, t -> {
+			NormalFormGame g = extract(t);
+			return g == null ? NOT_NORMAL_FORM : g;
+		});
+		return game == NOT_NORMAL_FORM ? null : (NormalFormGame) game;
+	}
+	
+	/*
+	 * Extracts the game from the tree, without memoizing it (see fromTree).
+	 */
+	static NormalFormGame extract(GameTree tree) {
+		GameNode rootNode = tree.getRootNode();
+		if (!rootNode.isPlayer1() || rootNode.numberOfChildren() == 0) return null;
+		int n1 = rootNode.numberOfChildren();
+		GameNode first = rootNode.getChildren().next();
+		int n2 = first.numberOfChildren();
+		if (!first.isPlayer2() || n2 == 0) return null;
+		String[] labelsP1 = new String[n1];
+		String[] labelsP2 = new String[n2];
+		Iterator<String> childrenLabels2 = first.getChildrenLabels();
+		for (int j = 0; j<n2; j++) labelsP2[j] = childrenLabels2.next();
+		int[][] U1 = new int[n1][n2];
+		int[][] U2 = new int[n1][n2];
+		Iterator<GameNode> childrenNodes1 = rootNode.getChildren();
+		for (int i = 0; i<n1; i++) {
+			GameNode childNode1 = childrenNodes1.next();
+			if (!childNode1.isPlayer2() || childNode1.numberOfChildren() != n2) return null;
+			labelsP1[i] = childNode1.getLabel();
+			for (int j = 0; j<n2; j++) {
+				/*
+				 * Columns follow the order of the actions below the first child, whatever the order below the others 
+				 */
+				GameNode childNode2;
+				try {
+					childNode2 = childNode1.getDescendant(labelsP2[j]);
+				} catch (GameNodeDoesNotExistException e) {
+					return null;
+				}
+				if (!childNode2.isTerminal()) return null;
+				U1[i][j] = childNode2.getPayoffP1();
+				U2[i][j] = childNode2.getPayoffP2();
+			}
+		}
+		return new NormalFormGame(U1, U2, labelsP1, labelsP2, tree.getSymbolTable());
 	}
 	
 	public NormalFormGame(int[][] M1, int[][] M2, String[] labelsP1, String[] labelsP2) {
 		/*
 		 * Constructor of a NormalFormGame with data obtained from the API 
 		 */
-		nRow = labelsP1.length;
-		rowActions = new ArrayList<String>();
+		this(M1, M2, labelsP1, labelsP2, new SymbolTable());
+	}
+	
+	public NormalFormGame(int[][] M1, int[][] M2, String[] labelsP1, String[] labelsP2, SymbolTable symbols) {
+		/*
+		 * Same as above, taking the names of the actions from the symbol table of the game tree 
+		 */
+		this(labelsP1.length, labelsP2.length, flatten(M1, labelsP2.length), flatten(M2, labelsP2.length), labelsP1, labelsP2, symbols);
+	}
+	
+	public NormalFormGame(int nRow, int nCol, double[] u1, double[] u2, String[] labelsP1, String[] labelsP2, SymbolTable symbols) {
+		/*
+		 * Constructor from row-major payoff matrices, which are used as they are (not copied) 
+		 */
+		this.nRow = nRow;
+		this.nCol = nCol;
+		this.u1 = u1;
+		this.u2 = u2;
+		this.u1t = transpose(u1, nRow, nCol);
+		this.u2t = transpose(u2, nRow, nCol);
+		rowLabels = labelsP1.clone();
+		colLabels = labelsP2.clone();
+		rowActions = new String[nRow];
 		pRow = new boolean[nRow];
 		for (int i = 0; i<nRow; i++) {
-			rowActions.add(labelsP1[i].substring(labelsP1[i].lastIndexOf(':')+1));
+			rowActions[i] = symbols.shortName(labelsP1[i]);
 			pRow[i] = true;
 		}
-		nCol = labelsP2.length;
-		colActions = new ArrayList<String>();	
+		colActions = new String[nCol];
 		pCol = new boolean[nCol];
 		for (int j = 0; j<nCol; j++) {
-			colActions.add(labelsP2[j].substring(labelsP2[j].lastIndexOf(':')+1));
+			colActions[j] = symbols.shortName(labelsP2[j]);
 			pCol[j] = true;
 		}
-		u1 = new double[nRow][nCol];
-		u2 = new double[nRow][nCol];		
+	}
+	
+	NormalFormGame(NormalFormGame game, boolean[] pRow, boolean[] pCol) {
+		/*
+		 * Copy of game that considers only the actions selected by pRow and pCol (the payoffs are shared) 
+		 */
+		this.nRow = game.nRow;
+		this.nCol = game.nCol;
+		this.u1 = game.u1;
+		this.u2 = game.u2;
+		this.u1t = game.u1t;
+		this.u2t = game.u2t;
+		this.rowLabels = game.rowLabels;
+		this.colLabels = game.colLabels;
+		this.rowActions = game.rowActions;
+		this.colActions = game.colActions;
+		this.pRow = pRow.clone();
+		this.pCol = pCol.clone();
+	}
+	
+	private static double[] flatten(int[][] M, int nCol) {
+		double[] u = new double[M.length * nCol];
+		for (int i = 0; i<M.length; i++) {
+			int row = i * nCol;
+			for (int j = 0; j<nCol; j++) u[row + j] = M[i][j];
+		}
+		return u;
+	}
+	
+	private static double[] transpose(double[] u, int nRow, int nCol) {
+		double[] t = new double[u.length];
 		for (int i = 0; i<nRow; i++) {
-			for (int j = 0; j<nCol; j++) {
-				u1[i][j] = M1[i][j];
-				u2[i][j] = M2[i][j];
+			int row = i * nCol;
+			for (int j = 0; j<nCol; j++) t[j * nRow + i] = u[row + j];
+		}
+		return t;
+	}
+	
+	public int getNumberOfRows() {
+		return nRow;
+	}
+	
+	public int getNumberOfColumns() {
+		return nCol;
+	}
+	
+	public boolean isRowConsidered(int i) {
+		return pRow[i];
+	}
+	
+	public boolean isColumnConsidered(int j) {
+		return pCol[j];
+	}
+	
+	/**
+	 * @return the indexes of the actions of player 1 that are considered, in order.
+	 */
+	public int[] consideredRows() {
+		return considered(pRow);
+	}
+	
+	/**
+	 * @return the indexes of the actions of player 2 that are considered, in order.
+	 */
+	public int[] consideredColumns() {
+		return considered(pCol);
+	}
+	
+	private static int[] considered(boolean[] p) {
+		int n = 0;
+		for (boolean b : p) if (b) n++;
+		int[] indexes = new int[n];
+		n = 0;
+		for (int i = 0; i<p.length; i++) if (p[i]) indexes[n++] = i;
+		return indexes;
+	}
+	
+	/**
+	 * Iteratively removes dominated actions (see IteratedDominance). Only 
+	 * the removal of strictly dominated actions preserves every equilibrium.
+	 * @param weak if true weakly dominated actions are also removed.
+	 * @param mixed if true actions dominated by mixed strategies are also removed.
+	 * @return a copy of this game that does not consider the removed actions.
+	 */
+	public NormalFormGame withoutDominatedActions(boolean weak, boolean mixed) {
+		return new IteratedDominance(this, weak, mixed).solve();
+	}
+	
+	/**
+	 * Returns the game restricted to the actions that are considered, with
+	 * the actions renumbered from 0. The equilibrium solvers work on this 
+	 * smaller game, and consideredRows() and consideredColumns() of this
+	 * game map its actions back to the actions of this game.
+	 * @return the restricted game, this game if every action is considered.
+	 */
+	public NormalFormGame compact() {
+		int[] rows = consideredRows();
+		int[] cols = consideredColumns();
+		if (rows.length == nRow && cols.length == nCol) return this;
+		int n = rows.length;
+		int m = cols.length;
+		double[] v1 = new double[n * m];
+		double[] v2 = new double[n * m];
+		String[] labels1 = new String[n];
+		String[] labels2 = new String[m];
+		String[] actions1 = new String[n];
+		String[] actions2 = new String[m];
+		for (int i = 0; i<n; i++) {
+			int row = rows[i] * nCol;
+			for (int j = 0; j<m; j++) {
+				v1[i*m + j] = u1[row + cols[j]];
+				v2[i*m + j] = u2[row + cols[j]];
 			}
+			labels1[i] = rowLabels[rows[i]];
+			actions1[i] = rowActions[rows[i]];
+		}
+		for (int j = 0; j<m; j++) {
+			labels2[j] = colLabels[cols[j]];
+			actions2[j] = colActions[cols[j]];
+		}
+		NormalFormGame game = new NormalFormGame(n, m, v1, v2, labels1, labels2, new SymbolTable());
+		System.arraycopy(actions1, 0, game.rowActions, 0, n);
+		System.arraycopy(actions2, 0, game.colActions, 0, m);
+		return game;
+	}
+	
+	public double getPayoffP1(int i, int j) {
+		return u1[i * nCol + j];
+	}
+	
+	public double getPayoffP2(int i, int j) {
+		return u2[i * nCol + j];
+	}
+	
+	/**
+	 * Computes the expected payoff of player 1 for each of its actions
+	 * when player 2 plays the mixed strategy colMix.
+	 * @param colMix probabilities of the actions of player 2.
+	 * @param out receives, in position i, the expected payoff of action i.
+	 */
+	public void rowPayoffs(double[] colMix, double[] out) {
+		for (int i = 0; i<nRow; i++) {
+			int row = i * nCol;
+			double sum = 0;
+			for (int j = 0; j<nCol; j++) sum += u1[row + j] * colMix[j];
+			out[i] = sum;
+		}
+	}
+	
+	/**
+	 * Computes the expected payoff of player 2 for each of its actions
+	 * when player 1 plays the mixed strategy rowMix.
+	 * @param rowMix probabilities of the actions of player 1.
+	 * @param out receives, in position j, the expected payoff of action j.
+	 */
+	public void colPayoffs(double[] rowMix, double[] out) {
+		for (int j = 0; j<nCol; j++) {
+			int col = j * nRow;
+			double sum = 0;
+			for (int i = 0; i<nRow; i++) sum += u2t[col + i] * rowMix[i];
+			out[j] = sum;
+		}
+	}
+	
+	/**
+	 * Returns a pure best response of player 1 (among the actions that are
+	 * considered) to the mixed strategy colMix of player 2.
+	 * @param colMix probabilities of the actions of player 2.
+	 * @param scratch array with at least nRow positions, overwritten.
+	 * @return the index of the best action, -1 if no action is considered.
+	 */
+	public int bestRowResponse(double[] colMix, double[] scratch) {
+		rowPayoffs(colMix, scratch);
+		int best = -1;
+		for (int i = 0; i<nRow; i++) if (pRow[i] && (best < 0 || scratch[i] > scratch[best])) best = i;
+		return best;
+	}
+	
+	/**
+	 * Returns a pure best response of player 2 (among the actions that are
+	 * considered) to the mixed strategy rowMix of player 1.
+	 * @param rowMix probabilities of the actions of player 1.
+	 * @param scratch array with at least nCol positions, overwritten.
+	 * @return the index of the best action, -1 if no action is considered.
+	 */
+	public int bestColResponse(double[] rowMix, double[] scratch) {
+		colPayoffs(rowMix, scratch);
+		int best = -1;
+		for (int j = 0; j<nCol; j++) if (pCol[j] && (best < 0 || scratch[j] > scratch[best])) best = j;
+		return best;
+	}
+	
+	public double expectedPayoffP1(double[] rowMix, double[] colMix) {
+		return expectedPayoff(u1, rowMix, colMix);
+	}
+	
+	public double expectedPayoffP2(double[] rowMix, double[] colMix) {
+		return expectedPayoff(u2, rowMix, colMix);
+	}
+	
+	private double expectedPayoff(double[] u, double[] rowMix, double[] colMix) {
+		double total = 0;
+		for (int i = 0; i<nRow; i++) {
+			if (rowMix[i] == 0) continue;
+			int row = i * nCol;
+			double sum = 0;
+			for (int j = 0; j<nCol; j++) sum += u[row + j] * colMix[j];
+			total += rowMix[i] * sum;
 		}
+		return total;
 	}
 
 	public void showGame() {
@@ -54,9 +356,9 @@ public class NormalFormGame {
 		System.out.println();
 		System.out.print("  ");
 		for (int j = 0; j<nCol; j++)  if (pCol[j]) {
-				if (colActions.size()>0) {
+				if (colActions.length>0) {
 					System.out.print("      ");
-					System.out.print(colActions.get(j).substring(0,1));
+					System.out.print(colActions[j].substring(0,1));
 					System.out.print("    ");
 				}
 				else {
@@ -66,10 +368,10 @@ public class NormalFormGame {
 		}
 		System.out.println();
 		for (int i = 0; i<nRow; i++) if (pRow[i]) {
-			if (rowActions.size()>0) System.out.print(rowActions.get(i).substring(0,1)+ ": ");
+			if (rowActions.length>0) System.out.print(rowActions[i].substring(0,1)+ ": ");
 			else System.out.print("Row " +i+ ": ");
-			for (int j = 0; j<nRow; j++)  if (pCol[j]) {
-				String fs = String.format("| %3.0f,%3.0f", u1[i][j], u2[i][j]);
+			for (int j = 0; j<nCol; j++)  if (pCol[j]) {
+				String fs = String.format("| %3.0f,%3.0f", u1[i*nCol+j], u2[i*nCol+j]);
 				System.out.print(fs+"  ");
 			}
 			System.out.println("|");
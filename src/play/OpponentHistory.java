@@ -0,0 +1,258 @@
+package play;
+
+import gametree.CompactGameTree;
+import gametree.GameTree;
+import gametree.InformationSetIndex;
+
+/**
+ * The history of the rounds of a game, and the frequency of the actions
+ * the opponent was seen to play in each information set.
+ *
+ * Each round is recorded from the terminal nodes it ended in, as player 1
+ * and as player 2 (getFinalP1Node and getFinalP2Node of the next request).
+ * The opponent's actions are the edges out of its nodes on the path from
+ * the root to each terminal, and are counted by slot of the information
+ * set index of the tree (see InformationSetIndex) as the round is
+ * recorded: once over the whole game, and once over a window of the last
+ * rounds, whose counts are decreased when a round leaves the window. The
+ * rounds of the window are kept in a ring buffer of ints, so the history
+ * never grows and queries never scan it: the empirical strategy of the
+ * opponent in an information set is computed in O(actions).
+ *
+ * An instance is not thread-safe.
+ */
+public class OpponentHistory {
+
+	/* Ints per round in the ring buffer */
+	private static final int STRIDE = 6;
+	private static final int FINAL_P1 = 0;
+	private static final int FINAL_P2 = 1;
+	private static final int SELF_AS_P1 = 2;
+	private static final int OPPONENT_AS_P1 = 3;
+	private static final int SELF_AS_P2 = 4;
+	private static final int OPPONENT_AS_P2 = 5;
+
+	private final CompactGameTree tree;
+	private final InformationSetIndex sets;
+	private final int window;
+	private final int[] rounds;			// ring buffer of the last window rounds, STRIDE ints each
+	private final int[] counts;			// by slot, over the whole game
+	private final int[] setCounts;		// by set, over the whole game
+	private final int[] windowCounts;	// by slot, over the window
+	private final int[] windowSetCounts;	// by set, over the window
+	private long recorded = 0;
+
+	/**
+	 * @param tree the game tree.
+	 * @param window the number of last rounds kept, and over which the
+	 * window frequencies are counted.
+	 */
+	public OpponentHistory(GameTree tree, int window) {
+		if(window < 1)
+			throw new IllegalArgumentException("The window must hold at least one round: " + window);
+		this.tree = CompactGameTree.of(tree);
+		this.sets = tree.getAttachment(InformationSetIndex.class, t -> InformationSetIndex.of(CompactGameTree.of(t)));
+		this.window = window;
+		this.rounds = new int[window * STRIDE];
+		this.counts = new int[this.sets.numberOfSlots()];
+		this.setCounts = new int[this.sets.numberOfSets()];
+		this.windowCounts = new int[this.sets.numberOfSlots()];
+		this.windowSetCounts = new int[this.sets.numberOfSets()];
+	}
+
+	/**
+	 * @return the information sets of the tree, which number the sets and
+	 * slots of the queries.
+	 */
+	public InformationSetIndex getInformationSets() {
+		return this.sets;
+	}
+
+	/**
+	 * Records the previous round, as reported by a request; nothing is
+	 * recorded in the first round.
+	 * @param myStrategy the request of the current round.
+	 * @return whether a round was recorded.
+	 */
+	public boolean record(PlayStrategyInterface myStrategy) {
+		if(myStrategy.getFinalP1Node() == -1 || myStrategy.getFinalP2Node() == -1)
+			return false;
+		record(myStrategy.getFinalP1Node(), myStrategy.getFinalP2Node());
+		return true;
+	}
+
+	/**
+	 * Records a round.
+	 * @param finalP1 the index of the terminal node reached as player 1.
+	 * @param finalP2 the index of the terminal node reached as player 2.
+	 */
+	public void record(int finalP1, int finalP2) {
+		int p1 = this.tree.positionOf(finalP1);
+		int p2 = this.tree.positionOf(finalP2);
+		if(p1 < 0 || p2 < 0 || !this.tree.isTerminal(p1) || !this.tree.isTerminal(p2))
+			throw new IllegalArgumentException("Not terminal nodes: " + finalP1 + ", " + finalP2);
+		int at = (int) (this.recorded % this.window) * STRIDE;
+		if(this.recorded >= this.window) { //The oldest round leaves the window
+			count(this.tree.positionOf(this.rounds[at + FINAL_P1]), false, null, null, this.windowCounts, this.windowSetCounts, -1);
+			count(this.tree.positionOf(this.rounds[at + FINAL_P2]), true, null, null, this.windowCounts, this.windowSetCounts, -1);
+		}
+		//As player 1 the opponent played player 2, and the other way round
+		count(p1, false, this.counts, this.setCounts, this.windowCounts, this.windowSetCounts, 1);
+		count(p2, true, this.counts, this.setCounts, this.windowCounts, this.windowSetCounts, 1);
+		this.rounds[at + FINAL_P1] = finalP1;
+		this.rounds[at + FINAL_P2] = finalP2;
+		this.rounds[at + SELF_AS_P1] = this.tree.payoffP1(p1);
+		this.rounds[at + OPPONENT_AS_P1] = this.tree.payoffP2(p1);
+		this.rounds[at + SELF_AS_P2] = this.tree.payoffP2(p2);
+		this.rounds[at + OPPONENT_AS_P2] = this.tree.payoffP1(p2);
+		this.recorded++;
+	}
+
+	/*
+	 * Adds delta to the counts of the actions of the opponent (player 1 if
+	 * opponentIsPlayer1) on the path from the root to terminal.
+	 */
+	private void count(int terminal, boolean opponentIsPlayer1, int[] counts, int[] setCounts,
+			int[] windowCounts, int[] windowSetCounts, int delta) {
+		for(int c = terminal, p = this.tree.parent(c); p >= 0; c = p, p = this.tree.parent(p)) {
+			boolean opponent = opponentIsPlayer1 ? this.tree.isPlayer1(p) : this.tree.isPlayer2(p);
+			if(!opponent)
+				continue;
+			int slot = this.sets.slotOf(c);
+			int set = this.sets.setOf(p);
+			if(counts != null) {
+				counts[slot] += delta;
+				setCounts[set] += delta;
+			}
+			windowCounts[slot] += delta;
+			windowSetCounts[set] += delta;
+		}
+	}
+
+	/**
+	 * @return the number of rounds recorded.
+	 */
+	public long size() {
+		return this.recorded;
+	}
+
+	/**
+	 * @return the number of last rounds kept.
+	 */
+	public int getWindow() {
+		return this.window;
+	}
+
+	/*
+	 * Position in the ring buffer of the round recorded ago rounds before
+	 * the last one.
+	 */
+	private int at(int ago) {
+		if(ago < 0 || ago >= Math.min(this.recorded, this.window))
+			throw new IndexOutOfBoundsException("Round not kept: " + ago);
+		return (int) ((this.recorded - 1 - ago) % this.window) * STRIDE;
+	}
+
+	/**
+	 * @param ago 0 for the last round recorded, 1 for the one before, ...
+	 * @return the index of the terminal node reached as player 1.
+	 */
+	public int getFinalP1Node(int ago) {
+		return this.rounds[at(ago) + FINAL_P1];
+	}
+
+	/**
+	 * @param ago 0 for the last round recorded, 1 for the one before, ...
+	 * @return the index of the terminal node reached as player 2.
+	 */
+	public int getFinalP2Node(int ago) {
+		return this.rounds[at(ago) + FINAL_P2];
+	}
+
+	/**
+	 * @param ago 0 for the last round recorded, 1 for the one before, ...
+	 * @return our payoff in the round, as player 1 and as player 2.
+	 */
+	public int getSelfScore(int ago) {
+		int at = at(ago);
+		return this.rounds[at + SELF_AS_P1] + this.rounds[at + SELF_AS_P2];
+	}
+
+	/**
+	 * @param ago 0 for the last round recorded, 1 for the one before, ...
+	 * @return the payoff of the opponent in the round, as player 1 and as
+	 * player 2.
+	 */
+	public int getOpponentScore(int ago) {
+		int at = at(ago);
+		return this.rounds[at + OPPONENT_AS_P1] + this.rounds[at + OPPONENT_AS_P2];
+	}
+
+	/**
+	 * @param slot an action slot of the information set index.
+	 * @return the number of times the opponent played the action.
+	 */
+	public int getCount(int slot) {
+		return this.counts[slot];
+	}
+
+	/**
+	 * @param set an information set of the opponent.
+	 * @return the number of times the opponent was seen to play in the set.
+	 */
+	public int getObservations(int set) {
+		return this.setCounts[set];
+	}
+
+	/**
+	 * @param slot an action slot of the information set index.
+	 * @return the number of times the opponent played the action in the window.
+	 */
+	public int getWindowCount(int slot) {
+		return this.windowCounts[slot];
+	}
+
+	/**
+	 * @param set an information set of the opponent.
+	 * @return the number of times the opponent was seen to play in the set
+	 * in the window.
+	 */
+	public int getWindowObservations(int set) {
+		return this.windowSetCounts[set];
+	}
+
+	/**
+	 * Computes the frequency of the actions of the opponent in an
+	 * information set over the whole game.
+	 * @param set an information set of the opponent.
+	 * @param out where the frequencies are written, by action of the set
+	 * (out[i] for slot firstSlot(set) + i).
+	 * @return false if the opponent was never seen to play in the set, in
+	 * which case out is left unchanged.
+	 */
+	public boolean empiricalStrategy(int set, double[] out) {
+		return frequencies(this.counts, this.setCounts[set], set, out);
+	}
+
+	/**
+	 * Computes the frequency of the actions of the opponent in an
+	 * information set over the window.
+	 * @param set an information set of the opponent.
+	 * @param out where the frequencies are written, by action of the set.
+	 * @return false if the opponent was not seen to play in the set in the
+	 * window, in which case out is left unchanged.
+	 */
+	public boolean windowStrategy(int set, double[] out) {
+		return frequencies(this.windowCounts, this.windowSetCounts[set], set, out);
+	}
+
+	private boolean frequencies(int[] counts, int total, int set, double[] out) {
+		if(total == 0)
+			return false;
+		int first = this.sets.firstSlot(set);
+		int n = this.sets.numberOfActions(set);
+		for(int i = 0; i < n; i++)
+			out[i] = (double) counts[first + i] / total;
+		return true;
+	}
+}
@@ -1,22 +1,69 @@
 package play;
 
-import java.security.SecureRandom;
 import java.util.Iterator;
 
 import gametree.GameNode;
 import play.exception.InvalidStrategyException;
 
-public class RandomStrategy extends Strategy {
+public class RandomStrategy extends Strategy implements LocalPlayer {
+
+	private SimplexSampler sampler = new SimplexSampler();
+	private double[] moves = new double[8];
+	
+	/* (non-Javadoc)
+	 * @see play.LocalPlayer#fillStrategy(play.PlayStrategyInterface)
+	 */
+	public boolean fillStrategy(PlayStrategyInterface myStrategy) {
+		if(myStrategy.getFinalP1Node() != -1) {
+			GameNode finalP1 = this.tree.getNodeByIndex(myStrategy.getFinalP1Node());
+			if(finalP1 != null)
+				System.out.println("Terminal node in last round as P1: " + finalP1);
+		}
+		
+		if(myStrategy.getFinalP2Node() != -1) {
+			GameNode finalP2 = this.tree.getNodeByIndex(myStrategy.getFinalP2Node());
+			if(finalP2 != null)
+				System.out.println("Terminal node in last round as P2: " + finalP2);
+		}
+		
+		Iterator<Integer> iterator = tree.getValidationSet().iterator();
+		Iterator<String> keys = myStrategy.keyIterator();
+		
+		while(iterator.hasNext()) {
+			int n = iterator.next();
+			if(this.moves.length < n)
+				this.moves = new double[Math.max(n, 2 * this.moves.length)];
+			this.sampler.uniform(this.moves, 0, n);
+			
+			for(int i = 0; i < n; i++) {
+				if(!keys.hasNext()) {
+					System.err.println("PANIC: Strategy structure does not match the game.");
+					return false;
+				}
+				myStrategy.put(keys.next(), this.moves[i]);
+			}
+		}
+		return true;
+	}
+	
+	/* (non-Javadoc)
+	 * @see play.LocalPlayer#endGame()
+	 */
+	public void endGame() {
+	}
+	
+	/* (non-Javadoc)
+	 * @see play.LocalPlayer#setSeed(long)
+	 */
+	public void setSeed(long seed) {
+		this.sampler = new SimplexSampler(seed);
+	}
 
 	@Override
 	public void execute() throws InterruptedException {
 		
-		SecureRandom random = new SecureRandom();
-		
-		while(!this.isTreeKnown()) {
+		while(!TreeAvailability.await(this, 1000))
 			System.err.println("Waiting for game tree to become available.");
-			Thread.sleep(1000);
-		}
 	
 		while(true) {
 		
@@ -26,39 +73,8 @@ public class RandomStrategy extends Strategy {
 			boolean playComplete = false;
 						
 			while(! playComplete ) {
-				if(myStrategy.getFinalP1Node() != -1) {
-					GameNode finalP1 = this.tree.getNodeByIndex(myStrategy.getFinalP1Node());
-					if(finalP1 != null)
-						System.out.println("Terminal node in last round as P1: " + finalP1);
-				}
-				
-				if(myStrategy.getFinalP2Node() != -1) {
-					GameNode finalP2 = this.tree.getNodeByIndex(myStrategy.getFinalP2Node());
-					if(finalP2 != null)
-						System.out.println("Terminal node in last round as P2: " + finalP2);
-				}
-				
-				Iterator<Integer> iterator = tree.getValidationSet().iterator();
-				Iterator<String> keys = myStrategy.keyIterator();
-				
-				while(iterator.hasNext()) {
-					double[] moves = new double[iterator.next()];
-					double sum = 0;
-					for(int i = 0; i < moves.length - 1; i++) {
-						moves[i] = random.nextDouble();
-						while(sum + moves[i] >= 1) moves[i] = random.nextDouble();
-						sum = sum + moves[i];
-					}
-					moves[moves.length-1] = ((double) 1) - sum;
-					
-					for(int i = 0; i < moves.length; i++) {
-						if(!keys.hasNext()) {
-							System.err.println("PANIC: Strategy structure does not match the game.");
-							return;
-						}
-						myStrategy.put(keys.next(), moves[i]);
-					}
-				}
+				if(!fillStrategy(myStrategy))
+					return;
 				
 				try{
 					this.provideStrategy(myStrategy);
@@ -0,0 +1,176 @@
+package play;
+
+import java.security.SecureRandom;
+import java.util.SplittableRandom;
+
+/**
+ * Draws random mixed strategies, i.e. points of the probability simplex,
+ * uniformly or from a Dirichlet distribution.
+ *
+ * A uniform point of the simplex with k actions is obtained by normalizing
+ * k independent exponential variables, and a Dirichlet one by normalizing
+ * gamma variables (Marsaglia and Tsang's method, which accepts more than
+ * 95% of its candidates whatever the parameter). Both take O(k) time,
+ * unlike drawing each probability below what is left of 1, which rejects
+ * more and more draws and does not sample the simplex uniformly.
+ *
+ * The draws are written in arrays supplied by the caller, and the values
+ * of each draw add to exactly 1. A sampler is not thread-safe: threads
+ * use their own, obtained with split. Samplers built with the same seed
+ * draw the same strategies, which makes local tournaments reproducible.
+ */
+public class SimplexSampler {
+
+	private final SplittableRandom random;
+
+	/**
+	 * Creates a sampler with a seed taken from a SecureRandom.
+	 */
+	public SimplexSampler() {
+		this(new SecureRandom().nextLong());
+	}
+
+	/**
+	 * @param seed the seed of the sampler.
+	 */
+	public SimplexSampler(long seed) {
+		this(new SplittableRandom(seed));
+	}
+
+	private SimplexSampler(SplittableRandom random) {
+		this.random = random;
+	}
+
+	/**
+	 * @return a new sampler, independent of this one, for another thread.
+	 */
+	public synchronized SimplexSampler split() {
+		return new SimplexSampler(this.random.split());
+	}
+
+	/**
+	 * @return a seed for another sampler, e.g. one for each task, drawn
+	 * from this one.
+	 */
+	public synchronized long nextSeed() {
+		return this.random.nextLong();
+	}
+
+	/**
+	 * Draws a point of the simplex uniformly.
+	 * @param out where the k probabilities are written.
+	 * @param from the position of the first probability in out.
+	 * @param k the number of actions.
+	 */
+	public void uniform(double[] out, int from, int k) {
+		double sum = 0;
+		for(int i = from; i < from + k; i++) {
+			out[i] = -Math.log(1 - this.random.nextDouble()); //Exponential; 1 - u is never 0
+			sum += out[i];
+		}
+		normalize(out, from, k, sum);
+	}
+
+	/**
+	 * Draws a point of the simplex uniformly.
+	 * @param out where the probabilities are written, one per action.
+	 */
+	public void uniform(double[] out) {
+		uniform(out, 0, out.length);
+	}
+
+	/**
+	 * Draws a point of the simplex from a symmetric Dirichlet distribution.
+	 * A concentration of 1 is the uniform distribution, lower ones favour
+	 * strategies close to pure ones and higher ones strategies close to
+	 * the uniform strategy.
+	 * @param alpha the concentration, positive.
+	 * @param out where the k probabilities are written.
+	 * @param from the position of the first probability in out.
+	 * @param k the number of actions.
+	 */
+	public void dirichlet(double alpha, double[] out, int from, int k) {
+		if(!(alpha > 0))
+			throw new IllegalArgumentException("The concentration must be positive: " + alpha);
+		double sum = 0;
+		for(int i = from; i < from + k; i++) {
+			out[i] = gamma(alpha);
+			sum += out[i];
+		}
+		normalize(out, from, k, sum);
+	}
+
+	/**
+	 * Draws a point of the simplex from a Dirichlet distribution.
+	 * @param alpha the parameter of each action, positive.
+	 * @param out where the probabilities are written, as many as in alpha.
+	 */
+	public void dirichlet(double[] alpha, double[] out) {
+		double sum = 0;
+		for(int i = 0; i < alpha.length; i++) {
+			if(!(alpha[i] > 0))
+				throw new IllegalArgumentException("The parameters must be positive: " + alpha[i]);
+			out[i] = gamma(alpha[i]);
+			sum += out[i];
+		}
+		normalize(out, 0, alpha.length, sum);
+	}
+
+	/*
+	 * Scales the values to add to 1, the last one taking the rounding
+	 * errors. Underflows (possible with tiny concentrations) fall back to a
+	 * uniformly chosen pure strategy.
+	 */
+	private void normalize(double[] out, int from, int k, double sum) {
+		int last = from + k - 1;
+		if(!(sum > 0) || Double.isInfinite(sum)) {
+			int pure = from + this.random.nextInt(k);
+			for(int i = from; i <= last; i++)
+				out[i] = i == pure ? 1 : 0;
+			return;
+		}
+		double total = 0;
+		for(int i = from; i < last; i++) {
+			out[i] /= sum;
+			total += out[i];
+		}
+		out[last] = Math.max(0, 1 - total);
+	}
+
+	/*
+	 * Gamma(alpha, 1) variable, by Marsaglia and Tsang's method; for alpha
+	 * below 1, Gamma(alpha + 1) * U^(1/alpha).
+	 */
+	private double gamma(double alpha) {
+		if(alpha < 1) {
+			double u = this.random.nextDouble();
+			return gamma(alpha + 1) * Math.pow(u, 1 / alpha);
+		}
+		double d = alpha - 1.0 / 3;
+		double c = 1 / Math.sqrt(9 * d);
+		while(true) {
+			double x = gaussian();
+			double v = 1 + c * x;
+			if(v <= 0)
+				continue;
+			v = v * v * v;
+			double u = this.random.nextDouble();
+			if(u < 1 - 0.0331 * x * x * x * x || Math.log(u) < 0.5 * x * x + d * (1 - v + Math.log(v)))
+				return d * v;
+		}
+	}
+
+	/*
+	 * Standard normal variable, by the polar method (one of the pair is
+	 * discarded, so that the sampler keeps no state besides its generator).
+	 */
+	private double gaussian() {
+		double x, y, s;
+		do {
+			x = 2 * this.random.nextDouble() - 1;
+			y = 2 * this.random.nextDouble() - 1;
+			s = x * x + y * y;
+		} while(s >= 1 || s == 0);
+		return x * Math.sqrt(-2 * Math.log(s) / s);
+	}
+}
@@ -0,0 +1,199 @@
+package play;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import gametree.CompactGameTree;
+import gametree.GameTree;
+
+/**
+ * Speculative precomputation of the response to the next request.
+ *
+ * The response of many strategies depends only on the tree and on the
+ * outcome of the previous round, that is on the pair (getFinalP1Node,
+ * getFinalP2Node) of the next request. Once a strategy has been delivered,
+ * start computes in the background the responses to the most likely pairs
+ * of outcomes, and when the request arrives take returns the response to
+ * the actual pair by lookup. Responses that are still being computed are
+ * waited for, the others are cancelled.
+ *
+ * @param <R> the type of the responses.
+ */
+public class Speculation<R> {
+
+	/**
+	 * Computes the response to an outcome of the previous round.
+	 */
+	public interface Responder<R> {
+		R respond(int finalP1, int finalP2) throws Exception;
+	}
+
+	private final ExecutorService executor;
+	private final Map<Long, Future<R>> responses = new ConcurrentHashMap<Long, Future<R>>();
+	private int hits = 0;
+	private int misses = 0;
+
+	public Speculation() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param threads number of threads computing responses.
+	 */
+	public Speculation(int threads) {
+		this.executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+			Thread t = new Thread(r, "speculation");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	private static long key(int finalP1, int finalP2) {
+		return ((long) finalP1 << 32) | (finalP2 & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Starts computing the responses to the pairs of outcomes taken from
+	 * outcomesP1 x outcomesP2, the pairs made of earlier elements first,
+	 * discarding the responses of the previous round.
+	 * @param outcomesP1 candidate values of getFinalP1Node, most likely first.
+	 * @param outcomesP2 candidate values of getFinalP2Node, most likely first.
+	 * @param limit maximum number of pairs.
+	 * @param responder the computation of a response.
+	 */
+	public void start(int[] outcomesP1, int[] outcomesP2, int limit, final Responder<R> responder) {
+		cancel();
+		int n1 = outcomesP1.length;
+		int n2 = outcomesP2.length;
+		//Walk the pairs by increasing i + j, so that the likely pairs come first
+		int submitted = 0;
+		for(int sum = 0; sum <= n1 + n2 - 2 && submitted < limit; sum++) {
+			for(int i = Math.max(0, sum - n2 + 1); i <= Math.min(sum, n1 - 1) && submitted < limit; i++) {
+				final int f1 = outcomesP1[i];
+				final int f2 = outcomesP2[sum - i];
+				this.responses.put(key(f1, f2), this.executor.submit(() -> responder.respond(f1, f2)));
+				submitted++;
+			}
+		}
+	}
+
+	/**
+	 * Returns the precomputed response to an outcome, and cancels the others.
+	 * @param finalP1 getFinalP1Node of the request.
+	 * @param finalP2 getFinalP2Node of the request.
+	 * @return the response, null if it was not speculated (or failed).
+	 * @throws InterruptedException if interrupted while waiting for the response.
+	 */
+	public R take(int finalP1, int finalP2) throws InterruptedException {
+		Future<R> response = this.responses.remove(key(finalP1, finalP2));
+		cancel();
+		R r = null;
+		if(response != null) {
+			try {
+				r = response.get();
+			} catch (ExecutionException e) {
+				System.err.println("Speculative computation failed: " + e.getCause());
+			} catch (CancellationException e) {
+				//Not computed
+			}
+		}
+		synchronized(this) {
+			if(r != null)
+				this.hits++;
+			else
+				this.misses++;
+		}
+		return r;
+	}
+
+	/**
+	 * Cancels the computations that are pending.
+	 */
+	public void cancel() {
+		for(Future<R> f : this.responses.values())
+			f.cancel(true);
+		this.responses.clear();
+	}
+
+	/**
+	 * Stops the threads; the instance cannot be used afterwards.
+	 */
+	public void shutdown() {
+		cancel();
+		this.executor.shutdownNow();
+	}
+
+	/**
+	 * @return the number of requests answered by a precomputed response.
+	 */
+	public synchronized int getHits() {
+		return this.hits;
+	}
+
+	/**
+	 * @return the number of requests for which no response was precomputed.
+	 */
+	public synchronized int getMisses() {
+		return this.misses;
+	}
+
+	/**
+	 * Ranks the terminal nodes of a tree by the probability of reaching them
+	 * when one player follows a known strategy, the opponent plays uniformly
+	 * and nature follows its weights. The terminals that the strategy cannot
+	 * reach are left out.
+	 * @param tree the game tree.
+	 * @param strategy the strategy of the player (probability of each label).
+	 * @param asPlayer1 whether the strategy is played as player 1.
+	 * @param limit maximum number of terminals returned.
+	 * @return the indexes of the most likely terminal nodes, most likely first.
+	 */
+	public static int[] likelyOutcomes(GameTree tree, Map<String, Double> strategy, boolean asPlayer1, int limit) {
+		CompactGameTree t = CompactGameTree.of(tree);
+		int n = t.size();
+		double[] reach = new double[n];
+		reach[0] = 1;
+		final List<Integer> terminals = new ArrayList<Integer>();
+		for(int p = 0; p < n; p++) {
+			int first = t.firstChild(p);
+			int count = t.childCount(p);
+			if(count == 0) {
+				if(reach[p] > 0)
+					terminals.add(p);
+				continue;
+			}
+			boolean own = asPlayer1 ? t.isPlayer1(p) : t.isPlayer2(p);
+			for(int c = first; c < first + count; c++) {
+				double s;
+				if(t.isNature(p))
+					s = t.weight(c);
+				else if(own) {
+					Double v = strategy.get(t.labelOf(t.labelId(c)));
+					s = v == null ? 0 : v.doubleValue();
+				}
+				else
+					s = 1.0 / count;
+				reach[c] = reach[p] * s;
+			}
+		}
+		final double[] r = reach;
+		Collections.sort(terminals, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Double.compare(r[b], r[a]);
+			}
+		});
+		int[] outcomes = new int[Math.min(limit, terminals.size())];
+		for(int i = 0; i < outcomes.length; i++)
+			outcomes[i] = t.indexAt(terminals.get(i));
+		return outcomes;
+	}
+}
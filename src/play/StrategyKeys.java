@@ -0,0 +1,131 @@
+package play;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import gametree.GameTree;
+import gametree.SymbolTable;
+
+/**
+ * Maps the keys of the information sets of a PlayStrategy (in the order
+ * given by keyIterator()) into the label ids of the SymbolTable of the
+ * game tree. This allows strategies to keep their mixed strategy in a
+ * double[] indexed by label id, and to copy it into the PlayStrategy
+ * only when it is delivered.
+ *
+ * The keys of a game do not change between rounds, hence an instance can
+ * be built in the first round and reused until the tree changes.
+ *
+ * The symbol table is only read: it belongs to the tree and is shared by
+ * everyone holding the tree. Keys that are not labels of the tree are
+ * given private ids, from symbols.size() on, which no solver writes to.
+ */
+public class StrategyKeys {
+
+	private final SymbolTable symbols;
+	private final String[] keys;
+	private final int[] ids;
+	private final int[] positions;
+
+	private StrategyKeys(SymbolTable symbols, String[] keys) {
+		this.symbols = symbols;
+		this.keys = keys;
+		this.ids = new int[keys.length];
+		int unknown = symbols.size();
+		for(int i = 0; i < keys.length; i++) {
+			this.ids[i] = symbols.idOf(keys[i]);
+			if(this.ids[i] == -1)
+				this.ids[i] = unknown++;
+		}
+		this.positions = new int[unknown];
+		Arrays.fill(this.positions, -1);
+		for(int i = 0; i < keys.length; i++)
+			this.positions[this.ids[i]] = i;
+	}
+
+	/**
+	 * Builds the mapping for the keys of a strategy request.
+	 * @param tree the tree of the current game.
+	 * @param myStrategy a strategy request for that game.
+	 * @return the mapping between the keys of myStrategy and label ids.
+	 */
+	public static StrategyKeys of(GameTree tree, PlayStrategyInterface myStrategy) {
+		return of(tree.getSymbolTable(), myStrategy.keyIterator());
+	}
+
+	/**
+	 * Builds the mapping for a sequence of keys.
+	 * @param symbols the symbol table of the current game.
+	 * @param keys the keys of the information sets, in order.
+	 * @return the mapping between keys and label ids.
+	 */
+	public static StrategyKeys of(SymbolTable symbols, Iterator<String> keys) {
+		String[] k = new String[16];
+		int n = 0;
+		while(keys.hasNext()) {
+			if(n == k.length)
+				k = Arrays.copyOf(k, n * 2);
+			k[n++] = keys.next();
+		}
+		return new StrategyKeys(symbols, Arrays.copyOf(k, n));
+	}
+
+	/**
+	 * @return the number of keys.
+	 */
+	public int size() {
+		return this.keys.length;
+	}
+
+	/**
+	 * @param i position of a key in keyIterator() order.
+	 * @return the key at position i.
+	 */
+	public String key(int i) {
+		return this.keys[i];
+	}
+
+	/**
+	 * @param i position of a key in keyIterator() order.
+	 * @return the label id of the key at position i.
+	 */
+	public int id(int i) {
+		return this.ids[i];
+	}
+
+	/**
+	 * @param id a label id.
+	 * @return the position of the key with that id, -1 if the label is
+	 * not a key of the strategy.
+	 */
+	public int positionOf(int id) {
+		if(id < 0 || id >= this.positions.length)
+			return -1;
+		return this.positions[id];
+	}
+
+	/**
+	 * @return the symbol table of the game.
+	 */
+	public SymbolTable getSymbolTable() {
+		return this.symbols;
+	}
+
+	/**
+	 * @return a zeroed array, indexed by label id, large enough to hold
+	 * a probability for every key.
+	 */
+	public double[] newProfile() {
+		return new double[this.positions.length];
+	}
+
+	/**
+	 * Copies a mixed strategy held by label id into a strategy request.
+	 * @param profile probabilities indexed by label id.
+	 * @param myStrategy the strategy request to fill.
+	 */
+	public void write(double[] profile, PlayStrategyInterface myStrategy) {
+		for(int i = 0; i < this.keys.length; i++)
+			myStrategy.put(this.keys[i], profile[this.ids[i]]);
+	}
+}
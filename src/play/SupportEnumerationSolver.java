@@ -0,0 +1,360 @@
+package play;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Computes the Nash equilibria of a NormalFormGame by support enumeration.
+ *
+ * The strictly dominated actions are removed first (this preserves every
+ * equilibrium). Then, for each support size k = 1, 2, ..., every pair of
+ * supports of k actions of each player is tried: the indifference system of
+ * each player over the support of the other is solved by Gaussian
+ * elimination, and the solution is an equilibrium if its probabilities are
+ * positive and no action outside the support is a better response. The
+ * pairs of each size are split, by ranges of supports of player 1, across a
+ * fork-join pool; each task reuses its own buffers for all its pairs.
+ *
+ * Only supports of equal size are tried, which finds all the equilibria of
+ * nondegenerate games (and some of the others). The search can stop early:
+ * after the first equilibrium (setFirstOnly), when an equilibrium is known
+ * and more than half of the time budget is gone, or when the budget runs out.
+ */
+public class SupportEnumerationSolver {
+
+	private static final double EPS = 1e-9;
+	private static final long PAIRS_PER_TASK = 2048;
+	private static final int PAIRS_PER_CHECK = 256; // pairs between two readings of the clock
+
+	private final NormalFormGame game;
+	private final NormalFormGame reduced;
+	private final int[] rows; // action of game of each row of reduced
+	private final int[] cols; // action of game of each column of reduced
+	private final ForkJoinPool pool;
+	private final long[][] binomial;
+	private boolean firstOnly = false;
+	private boolean complete = false;
+
+	public SupportEnumerationSolver(NormalFormGame game) {
+		this(game, ForkJoinPool.commonPool());
+	}
+
+	public SupportEnumerationSolver(NormalFormGame game, ForkJoinPool pool) {
+		this.game = game;
+		NormalFormGame strict = IteratedDominance.strict(game);
+		this.reduced = strict.compact();
+		this.rows = strict.consideredRows();
+		this.cols = strict.consideredColumns();
+		this.pool = pool;
+		this.binomial = binomials(Math.max(this.reduced.nRow, this.reduced.nCol));
+	}
+
+	/**
+	 * @param firstOnly if true the search stops at the first equilibrium found.
+	 */
+	public void setFirstOnly(boolean firstOnly) {
+		this.firstOnly = firstOnly;
+	}
+
+	/**
+	 * @return true if the last search tried every pair of supports.
+	 */
+	public boolean isComplete() {
+		return this.complete;
+	}
+
+	/**
+	 * @return the equilibria of the game, ordered by support size.
+	 */
+	public List<Equilibrium> solve() {
+		return solve(Long.MAX_VALUE);
+	}
+
+	/**
+	 * @param budget time available, in milliseconds.
+	 * @return the equilibria found within the budget, ordered by support size.
+	 */
+	public List<Equilibrium> solve(long budget) {
+		long now = System.nanoTime();
+		long deadline = budget >= Long.MAX_VALUE / 1000000 ? Long.MAX_VALUE : now + budget * 1000000;
+		long hurry = deadline == Long.MAX_VALUE ? Long.MAX_VALUE : now + budget * 500000;
+		Search search = new Search(deadline, hurry);
+		int n = this.reduced.nRow;
+		int m = this.reduced.nCol;
+		for(int k = 1; k <= Math.min(n, m) && !search.stop.get(); k++) {
+			if(!search.found.isEmpty() && System.nanoTime() - hurry > 0) { //Sizes with few pairs never read the clock
+				search.stop.set(true);
+				break;
+			}
+			this.pool.invoke(new SupportTask(search, k, 0, this.binomial[n][k]));
+		}
+		this.complete = !search.stop.get();
+
+		List<Found> found = new ArrayList<Found>(search.found);
+		Collections.sort(found, new Comparator<Found>() {
+			public int compare(Found a, Found b) {
+				return a.k != b.k ? Integer.compare(a.k, b.k) : Long.compare(a.rank, b.rank);
+			}
+		});
+		List<Equilibrium> equilibria = new ArrayList<Equilibrium>(found.size());
+		for(Found f : found)
+			equilibria.add(f.equilibrium.expand(this.rows, this.cols, this.game.nRow, this.game.nCol));
+		return equilibria;
+	}
+
+	/*
+	 * Binomial coefficients up to n, saturated at Long.MAX_VALUE.
+	 */
+	private static long[][] binomials(int n) {
+		long[][] c = new long[n + 1][n + 2];
+		for(int i = 0; i <= n; i++) {
+			c[i][0] = 1;
+			for(int k = 1; k <= i; k++) {
+				long sum = c[i - 1][k - 1] + c[i - 1][k];
+				c[i][k] = sum < 0 ? Long.MAX_VALUE : sum;
+			}
+		}
+		return c;
+	}
+
+	/*
+	 * Writes into s the k-subset of {0..n-1} of lexicographic rank r.
+	 */
+	private void unrank(long r, int n, int k, int[] s) {
+		int c = 0;
+		for(int p = 0; p < k; p++) {
+			while(true) {
+				long count = this.binomial[n - 1 - c][k - 1 - p];
+				if(r < count)
+					break;
+				r -= count;
+				c++;
+			}
+			s[p] = c++;
+		}
+	}
+
+	/*
+	 * Advances s to the next k-subset of {0..n-1}; false after the last one.
+	 */
+	private static boolean next(int[] s, int n, int k) {
+		int p = k - 1;
+		while(p >= 0 && s[p] == n - k + p)
+			p--;
+		if(p < 0)
+			return false;
+		s[p]++;
+		for(int q = p + 1; q < k; q++)
+			s[q] = s[q - 1] + 1;
+		return true;
+	}
+
+	private static class Search {
+		final long deadline;
+		final long hurry;
+		final AtomicBoolean stop = new AtomicBoolean(false);
+		final ConcurrentLinkedQueue<Found> found = new ConcurrentLinkedQueue<Found>();
+
+		Search(long deadline, long hurry) {
+			this.deadline = deadline;
+			this.hurry = hurry;
+		}
+	}
+
+	private static class Found {
+		final int k;
+		final long rank;
+		final Equilibrium equilibrium;
+
+		Found(int k, long rank, Equilibrium equilibrium) {
+			this.k = k;
+			this.rank = rank;
+			this.equilibrium = equilibrium;
+		}
+	}
+
+	/*
+	 * Tries the pairs of supports of size k whose support of player 1 has
+	 * rank in [from, to).
+	 */
+	private class SupportTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Search search;
+		private final int k;
+		private final long from;
+		private final long to;
+
+		SupportTask(Search search, int k, long from, long to) {
+			this.search = search;
+			this.k = k;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			long colSupports = SupportEnumerationSolver.this.binomial[reduced.nCol][this.k];
+			if(this.to - this.from > 1 && (this.to - this.from) > PAIRS_PER_TASK / Math.max(1, colSupports)) {
+				long middle = this.from + (this.to - this.from) / 2;
+				invokeAll(new SupportTask(this.search, this.k, this.from, middle),
+						new SupportTask(this.search, this.k, middle, this.to));
+				return;
+			}
+			int n = reduced.nRow;
+			int m = reduced.nCol;
+			int k = this.k;
+			int[] rowSupport = new int[k];
+			int[] colSupport = new int[k];
+			double[] system = new double[(k + 1) * (k + 2)];
+			double[] x = new double[k + 1];
+			double[] y = new double[k + 1];
+			unrank(this.from, n, k, rowSupport);
+			int pairs = 0;
+			for(long r = this.from; r < this.to; r++) {
+				for(int c = 0; c < k; c++)
+					colSupport[c] = c;
+				long rank = r * colSupports;
+				do {
+					if(this.search.stop.get())
+						return;
+					if(++pairs == PAIRS_PER_CHECK) {
+						pairs = 0;
+						long now = System.nanoTime();
+						if(now - this.search.deadline > 0 || (!this.search.found.isEmpty() && now - this.search.hurry > 0)) {
+							this.search.stop.set(true);
+							return;
+						}
+					}
+					Equilibrium e = tryPair(rowSupport, colSupport, k, system, x, y);
+					if(e != null) {
+						this.search.found.add(new Found(k, rank, e));
+						if(firstOnly || System.nanoTime() - this.search.hurry > 0)
+							this.search.stop.set(true);
+					}
+					rank++;
+				} while(next(colSupport, m, k));
+				next(rowSupport, n, k);
+			}
+		}
+	}
+
+	/*
+	 * Returns the equilibrium (of the reduced game) with the given supports,
+	 * or null if there is none.
+	 */
+	private Equilibrium tryPair(int[] rowSupport, int[] colSupport, int k, double[] system, double[] x, double[] y) {
+		int n = this.reduced.nRow;
+		int m = this.reduced.nCol;
+		double[] u1 = this.reduced.u1;
+		double[] u2t = this.reduced.u2t;
+		int w = k + 2;
+
+		/* Strategy of player 2 that makes player 1 indifferent over rowSupport, and its payoff */
+		for(int r = 0; r < k; r++) {
+			int row = rowSupport[r] * m;
+			for(int c = 0; c < k; c++)
+				system[r * w + c] = u1[row + colSupport[c]];
+			system[r * w + k] = -1;
+			system[r * w + k + 1] = 0;
+		}
+		for(int c = 0; c < k; c++)
+			system[k * w + c] = 1;
+		system[k * w + k] = 0;
+		system[k * w + k + 1] = 1;
+		if(!gauss(system, k + 1, y))
+			return null;
+		for(int c = 0; c < k; c++)
+			if(y[c] <= EPS)
+				return null;
+		double v1 = y[k];
+		for(int i = 0; i < n; i++) {
+			int row = i * m;
+			double sum = 0;
+			for(int c = 0; c < k; c++)
+				sum += u1[row + colSupport[c]] * y[c];
+			if(sum > v1 + EPS)
+				return null;
+		}
+
+		/* Strategy of player 1 that makes player 2 indifferent over colSupport, and its payoff */
+		for(int c = 0; c < k; c++) {
+			int col = colSupport[c] * n;
+			for(int r = 0; r < k; r++)
+				system[c * w + r] = u2t[col + rowSupport[r]];
+			system[c * w + k] = -1;
+			system[c * w + k + 1] = 0;
+		}
+		for(int r = 0; r < k; r++)
+			system[k * w + r] = 1;
+		system[k * w + k] = 0;
+		system[k * w + k + 1] = 1;
+		if(!gauss(system, k + 1, x))
+			return null;
+		for(int r = 0; r < k; r++)
+			if(x[r] <= EPS)
+				return null;
+		double v2 = x[k];
+		for(int j = 0; j < m; j++) {
+			int col = j * n;
+			double sum = 0;
+			for(int r = 0; r < k; r++)
+				sum += u2t[col + rowSupport[r]] * x[r];
+			if(sum > v2 + EPS)
+				return null;
+		}
+
+		double[] rowStrategy = new double[n];
+		double[] colStrategy = new double[m];
+		for(int r = 0; r < k; r++)
+			rowStrategy[rowSupport[r]] = x[r];
+		for(int c = 0; c < k; c++)
+			colStrategy[colSupport[c]] = y[c];
+		return new Equilibrium(rowStrategy, colStrategy, v1, v2);
+	}
+
+	/*
+	 * Solves the n x n system whose augmented matrix is a (row-major, n+1
+	 * columns, overwritten) by Gaussian elimination with partial pivoting.
+	 * Returns false if the system is singular.
+	 */
+	static boolean gauss(double[] a, int n, double[] out) {
+		int w = n + 1;
+		for(int p = 0; p < n; p++) {
+			int pivot = p;
+			for(int i = p + 1; i < n; i++)
+				if(Math.abs(a[i * w + p]) > Math.abs(a[pivot * w + p]))
+					pivot = i;
+			if(Math.abs(a[pivot * w + p]) < EPS)
+				return false;
+			if(pivot != p) {
+				for(int j = p; j < w; j++) {
+					double t = a[p * w + j];
+					a[p * w + j] = a[pivot * w + j];
+					a[pivot * w + j] = t;
+				}
+			}
+			double inv = 1 / a[p * w + p];
+			for(int i = p + 1; i < n; i++) {
+				double f = a[i * w + p] * inv;
+				if(f == 0)
+					continue;
+				for(int j = p; j < w; j++)
+					a[i * w + j] -= f * a[p * w + j];
+			}
+		}
+		for(int i = n - 1; i >= 0; i--) {
+			double sum = a[i * w + n];
+			for(int j = i + 1; j < n; j++)
+				sum -= a[i * w + j] * out[j];
+			out[i] = sum / a[i * w + i];
+		}
+		return true;
+	}
+}
@@ -0,0 +1,42 @@
+package play;
+
+import gametree.GameTree;
+
+/**
+ * Waits for the game tree of a strategy without polling every second.
+ *
+ * The game engine builds the tree with GameTree.fromGameTreeClass and hands
+ * it to the strategy right afterwards. await sleeps until a tree is received
+ * (see GameTree.awaitPublication), but never longer than a short slice
+ * between two checks of the strategy: the tree may have been received just
+ * before the wait began, and the hand-over that follows is not signalled.
+ * The strategy is thus playing a few milliseconds at most after its tree
+ * is known, and its tree is only ever set by the engine.
+ */
+public class TreeAvailability {
+
+	/* Longest sleep, in milliseconds, between two checks of the strategy */
+	private static final long SLICE = 10;
+
+	private TreeAvailability() {
+	}
+
+	/**
+	 * Waits until the tree of a strategy is known.
+	 * @param strategy the strategy.
+	 * @param timeout maximum time to wait, in milliseconds.
+	 * @return true if the tree is known, false if the timeout elapsed first.
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	public static boolean await(Strategy strategy, long timeout) throws InterruptedException {
+		long deadline = System.nanoTime() + timeout * 1000000;
+		long seen = GameTree.publications();
+		while(!strategy.isTreeKnown()) {
+			long left = (deadline - System.nanoTime()) / 1000000;
+			if(left <= 0)
+				return false;
+			seen = GameTree.awaitPublication(seen, Math.min(left, SLICE));
+		}
+		return true;
+	}
+}
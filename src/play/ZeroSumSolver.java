@@ -0,0 +1,82 @@
+package play;
+
+/**
+ * Solves constant-sum games (u1 + u2 is the same for every outcome, which
+ * includes zero-sum games) by linear programming.
+ *
+ * In such games the equilibria are the pairs of maximin strategies, and
+ * both are given by a single LinearProgram: with the payoffs A of player 1
+ * shifted to be positive, the optimal solution q of
+ *
+ *   maximize sum_j q_j  subject to  A q <= 1,  q >= 0
+ *
+ * normalized is the minimax strategy of player 2, the optimal solution of
+ * the dual program normalized is the maximin strategy of player 1, and
+ * 1 / sum_j q_j is the (shifted) value of the game.
+ */
+public class ZeroSumSolver {
+
+	private static final double EPS = 1e-9;
+
+	/**
+	 * @param game a game.
+	 * @return true if the payoffs of the players add up to the same
+	 * constant in every outcome of the actions considered.
+	 */
+	public static boolean isConstantSum(NormalFormGame game) {
+		boolean first = true;
+		double sum = 0;
+		for (int i = 0; i<game.nRow; i++) {
+			if (!game.pRow[i]) continue;
+			int row = i * game.nCol;
+			for (int j = 0; j<game.nCol; j++) {
+				if (!game.pCol[j]) continue;
+				double s = game.u1[row + j] + game.u2[row + j];
+				if (first) {
+					sum = s;
+					first = false;
+				}
+				else if (Math.abs(s - sum) > EPS) return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Computes the maximin strategies and the value of a constant-sum game.
+	 * @param game a constant-sum game.
+	 * @return the equilibrium (the payoffs being the values of the game for
+	 * each player), over the actions of game.
+	 * @throws IllegalArgumentException if the game is not constant-sum.
+	 */
+	public static Equilibrium solve(NormalFormGame game) {
+		if (!isConstantSum(game))
+			throw new IllegalArgumentException("Not a constant-sum game");
+		int[] rows = game.consideredRows();
+		int[] cols = game.consideredColumns();
+		int n = rows.length;
+		int m = cols.length;
+		double min = Double.POSITIVE_INFINITY;
+		for (int i : rows)
+			for (int j : cols) min = Math.min(min, game.u1[i*game.nCol + j]);
+		double shift = 1 - min;
+
+		LinearProgram lp = new LinearProgram(n, m);
+		for (int r = 0; r<n; r++) {
+			int row = rows[r] * game.nCol;
+			for (int c = 0; c<m; c++) lp.setCoefficient(r, c, game.u1[row + cols[c]] + shift);
+			lp.setBound(r, 1);
+		}
+		for (int c = 0; c<m; c++) lp.setObjective(c, 1);
+		lp.solve(); //Always optimal: the payoffs are positive, so the program is bounded
+
+		double total = lp.getValue();
+		double[] x = new double[game.nRow];
+		double[] y = new double[game.nCol];
+		for (int r = 0; r<n; r++) x[rows[r]] = lp.getDual(r) / total;
+		for (int c = 0; c<m; c++) y[cols[c]] = lp.getPrimal(c) / total;
+		double value = 1 / total - shift;
+		double constant = game.u1[rows[0]*game.nCol + cols[0]] + game.u2[rows[0]*game.nCol + cols[0]];
+		return new Equilibrium(x, y, value, constant - value);
+	}
+}